@@ -0,0 +1,251 @@
+package com.company.codegen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Generates the TenantSettings class from SystemConfiguration.json: one typed accessor per field,
+ * reading the field's ordinal slot of a tenant config snapshot directly.
+ * <p>
+ * Runs before the main sources are compiled, so it reads the JSON tree instead of using
+ * ConfigSchema. Ordinals and the schema fingerprint follow the rules of ConfigSchema; the generated
+ * class checks the fingerprint against the runtime schema, so any drift fails fast. The Kind table
+ * mirrors ConfigSchema.FieldKind and the field classes registered in FieldTypes; a field type added
+ * there needs an entry here too, which TenantSettingsGeneratorTest checks.
+ * <p>
+ * Arguments: JSON source path, output source root.
+ */
+public class TenantSettingsGenerator {
+  private static final String PACKAGE = "com.company";
+  private static final String CLASS_NAME = "TenantSettings";
+
+  enum Kind {
+    INTEGER("int", "snapshot.getInt(%s)"),
+    BOOL("boolean", "snapshot.getBoolean(%s)"),
+    STRING("String", "(String) snapshot.getObject(%s)"),
+    DECIMAL("double", "snapshot.getDouble(%s)"),
+    INTEGER_LIST("List<Integer>", "(List<Integer>) snapshot.getObject(%s)"),
+    ONTOLOGY_LIST("OntologyFilter", "(OntologyFilter) snapshot.getObject(%s)"),
+    SEARCH_TYPE_LIST("SearchOrder", "(SearchOrder) snapshot.getObject(%s)"),
+    SEARCH_TYPE_WEIGHT_LIST("SearchTypeWeights", "(SearchTypeWeights) snapshot.getObject(%s)"),
+    LONG("long", "snapshot.getLong(%s)"),
+    STRING_LIST("List<String>", "(List<String>) snapshot.getObject(%s)"),
+    DURATION("Duration", "(Duration) snapshot.getObject(%s)"),
+    STRING_MAP("Map<String, String>", "(Map<String, String>) snapshot.getObject(%s)");
+
+    final String javaType;
+    final String read;
+
+    Kind(String javaType, String read) {
+      this.javaType = javaType;
+      this.read = read;
+    }
+  }
+
+  // by the simple name of the field class, as in the @class property of the JSON
+  static final Map<String, Kind> KINDS = new HashMap<>();
+
+  static {
+    KINDS.put("IntegerField", Kind.INTEGER);
+    KINDS.put("BoolField", Kind.BOOL);
+    KINDS.put("StringField", Kind.STRING);
+    KINDS.put("DecimalField", Kind.DECIMAL);
+    KINDS.put("IntegerList", Kind.INTEGER_LIST);
+    KINDS.put("OntologyList", Kind.ONTOLOGY_LIST);
+    KINDS.put("SearchTypeList", Kind.SEARCH_TYPE_LIST);
+    KINDS.put("SearchTypeWeightList", Kind.SEARCH_TYPE_WEIGHT_LIST);
+    KINDS.put("LongField", Kind.LONG);
+    KINDS.put("StringList", Kind.STRING_LIST);
+    KINDS.put("DurationField", Kind.DURATION);
+    KINDS.put("StringMap", Kind.STRING_MAP);
+  }
+
+  private static class Field {
+    final String name;
+    final int ordinal;
+    final Kind kind;
+    final String label;
+
+    Field(String name, int ordinal, Kind kind, String label) {
+      this.name = name;
+      this.ordinal = ordinal;
+      this.kind = kind;
+      this.label = label;
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: TenantSettingsGenerator <SystemConfiguration.json> <output dir>");
+      System.exit(2);
+    }
+
+    Path target = Paths.get(args[1]).resolve(PACKAGE.replace('.', '/')).resolve(CLASS_NAME + ".java");
+    Files.createDirectories(target.getParent());
+    Files.write(target, generate(Paths.get(args[0])).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Returns the source of the TenantSettings class for a system configuration.
+   */
+  static String generate(Path source) throws IOException {
+    return generate(readFields(source), source.getFileName().toString());
+  }
+
+  private static List<Field> readFields(Path source) throws IOException {
+    JsonNode groups = new ObjectMapper().readTree(source.toFile());
+    List<Field> fields = new ArrayList<>();
+    Map<String, Field> byName = new LinkedHashMap<>();
+
+    for (JsonNode group : groups) {
+      JsonNode groupFields = group.get("fields");
+      if (groupFields == null || !groupFields.isArray())
+        continue;
+
+      for (JsonNode node : groupFields) {
+        String type = node.path("@class").asText();
+        Kind kind = KINDS.get(type.substring(Math.max(type.lastIndexOf('$'), type.lastIndexOf('.')) + 1));
+        if (kind == null)
+          continue;
+
+        Field field = new Field(node.path("field").asText(), fields.size(), kind, node.path("label").asText(null));
+        if (byName.put(field.name, field) != null)
+          throw new IllegalArgumentException("Field " + field.name + " is defined more than once");
+        fields.add(field);
+      }
+    }
+    return fields;
+  }
+
+  private static String generate(List<Field> fields, String source) {
+    Map<String, Field> constants = new HashMap<>();
+    Map<String, Field> accessors = new HashMap<>();
+
+    StringBuilder slots = new StringBuilder();
+    StringBuilder methods = new StringBuilder();
+    for (Field field : fields) {
+      String constant = constantName(field.name);
+      String accessor = (field.kind == Kind.BOOL ? "is" : "get") + capitalize(identifier(field.name));
+      checkUnique(constants, constant, field);
+      checkUnique(accessors, accessor, field);
+
+      slots.append("  public static final int ").append(constant).append(" = ").append(field.ordinal).append(";\n");
+
+      methods.append('\n');
+      if (field.label != null && !field.label.isEmpty())
+        methods.append("  /**\n   * ").append(field.label.replace("*/", "* /")).append("\n   */\n");
+      if (field.kind.javaType.contains("<"))
+        methods.append("  @SuppressWarnings(\"unchecked\")\n");
+      methods.append("  public ").append(field.kind.javaType).append(' ').append(accessor).append("() {\n")
+        .append("    return ").append(String.format(field.kind.read, constant)).append(";\n")
+        .append("  }\n");
+    }
+
+    return "package " + PACKAGE + ";\n"
+      + "\n"
+      + "import java.time.Duration;\n"
+      + "import java.util.List;\n"
+      + "import java.util.Map;\n"
+      + "\n"
+      + "/**\n"
+      + " * Typed settings of one tenant, generated from " + source + " by TenantSettingsGenerator.\n"
+      + " * Do not edit; change the system configuration instead.\n"
+      + " */\n"
+      + "public final class " + CLASS_NAME + " {\n"
+      + "  public static final String SCHEMA_FINGERPRINT = \"" + fingerprint(fields) + "\";\n"
+      + "\n"
+      + slots
+      + "\n"
+      + "  private static volatile ConfigSchema verifiedSchema;\n"
+      + "\n"
+      + "  private final TenantConfigSnapshot snapshot;\n"
+      + "\n"
+      + "  private " + CLASS_NAME + "(TenantConfigSnapshot snapshot) {\n"
+      + "    this.snapshot = snapshot;\n"
+      + "  }\n"
+      + "\n"
+      + "  public static " + CLASS_NAME + " of(TenantConfigSnapshot snapshot) {\n"
+      + "    ConfigSchema schema = snapshot.getSchema();\n"
+      + "    if (schema != verifiedSchema) {\n"
+      + "      if (!SCHEMA_FINGERPRINT.equals(schema.getFingerprint()))\n"
+      + "        throw new IllegalStateException(\"" + CLASS_NAME + " was generated for schema \" + SCHEMA_FINGERPRINT\n"
+      + "          + \" but the system configuration has schema \" + schema.getFingerprint());\n"
+      + "      verifiedSchema = schema;\n"
+      + "    }\n"
+      + "    return new " + CLASS_NAME + "(snapshot);\n"
+      + "  }\n"
+      + "\n"
+      + "  public static " + CLASS_NAME + " forTenant(String tenantId) throws Exception {\n"
+      + "    return of(SystemConfigUtil.getInstance().getTenantSnapshot(tenantId));\n"
+      + "  }\n"
+      + "\n"
+      + "  public TenantConfigSnapshot getSnapshot() {\n"
+      + "    return snapshot;\n"
+      + "  }\n"
+      + methods
+      + "}\n";
+  }
+
+  private static void checkUnique(Map<String, Field> names, String name, Field field) {
+    Field previous = names.put(name, field);
+    if (previous != null)
+      throw new IllegalArgumentException("Fields " + previous.name + " and " + field.name + " both map to " + name);
+  }
+
+  /**
+   * Same hash as ConfigSchema.getFingerprint: CRC32 over the field names and kinds in ordinal order.
+   */
+  private static String fingerprint(List<Field> fields) {
+    CRC32 crc = new CRC32();
+    for (Field field : fields) {
+      crc.update(field.name.getBytes(StandardCharsets.UTF_8));
+      crc.update(0);
+      crc.update(field.kind.name().getBytes(StandardCharsets.UTF_8));
+      crc.update(0);
+    }
+    return String.format("%08x", crc.getValue());
+  }
+
+  private static String identifier(String name) {
+    StringBuilder identifier = new StringBuilder();
+    for (char c : name.toCharArray())
+      identifier.append(Character.isJavaIdentifierPart(c) ? c : '_');
+    if (identifier.length() == 0 || !Character.isJavaIdentifierStart(identifier.charAt(0)))
+      identifier.insert(0, '_');
+    return identifier.toString();
+  }
+
+  private static String capitalize(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  /**
+   * spanQuerySLOP becomes SPAN_QUERY_SLOP.
+   */
+  private static String constantName(String name) {
+    String identifier = identifier(name);
+    StringBuilder constant = new StringBuilder();
+    for (int i = 0; i < identifier.length(); i++) {
+      char c = identifier.charAt(i);
+      boolean wordStart = i > 0 && Character.isUpperCase(c)
+        && (Character.isLowerCase(identifier.charAt(i - 1))
+        || i + 1 < identifier.length() && Character.isLowerCase(identifier.charAt(i + 1)) && Character.isUpperCase(identifier.charAt(i - 1)));
+      if (wordStart && constant.charAt(constant.length() - 1) != '_')
+        constant.append('_');
+      constant.append(Character.toUpperCase(c));
+    }
+    return constant.toString();
+  }
+}
@@ -0,0 +1,107 @@
+package com.company;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Random;
+
+/**
+ * Generates system configurations and tenant overrides of a given size for the benchmarks. Every
+ * schema has the fields the benchmarks read (maxResults, searchTypeWeights) followed by filler
+ * fields of the scalar kinds, 32 to a group.
+ */
+final class BenchmarkSchemas {
+  static final int FIXED_FIELDS = 2;
+
+  private static final String FIELD_CLASS = "com.company.SystemConfig$SystemConfigMapper$";
+  private static final int GROUP_SIZE = 32;
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private BenchmarkSchemas() {
+  }
+
+  static String schema(int size) throws Exception {
+    ArrayNode groups = mapper.createArrayNode();
+    ArrayNode fields = group(groups, "search");
+
+    ObjectNode maxResults = field(fields, "IntegerField", "maxResults", "number");
+    maxResults.put("defaultValue", 10);
+
+    ObjectNode weights = field(fields, "SearchTypeWeightList", "searchTypeWeights", "object");
+    weights.put("array", true);
+    weights.put("unique", true);
+    ArrayNode weightDefaults = weights.putArray("defaultValue");
+    weightDefaults.addObject().put("searchType", "PHRASE_IN_SUBJECT").put("weight", 2.0);
+    weightDefaults.addObject().put("searchType", "FULLTEXT_KEYWORD").put("weight", 0.5);
+
+    for (int i = 0; i < size - FIXED_FIELDS; i++) {
+      if (i % GROUP_SIZE == 0)
+        fields = group(groups, "group" + i / GROUP_SIZE);
+
+      String name = fillerName(i);
+      switch (i % 4) {
+        case 0:
+          field(fields, "IntegerField", name, "number").put("defaultValue", i);
+          break;
+        case 1:
+          field(fields, "BoolField", name, "boolean").put("defaultValue", false);
+          break;
+        case 2:
+          field(fields, "DecimalField", name, "number").put("defaultValue", i / 4.0);
+          break;
+        default:
+          field(fields, "StringField", name, "string").put("defaultValue", name);
+          break;
+      }
+    }
+    return mapper.writeValueAsString(groups);
+  }
+
+  /**
+   * Settings overriding the given share of the filler fields of a schema, picked at random.
+   */
+  static ObjectNode overrides(int size, double density, Random random) {
+    ObjectNode settings = mapper.createObjectNode();
+    for (int i = 0; i < size - FIXED_FIELDS; i++) {
+      if (random.nextDouble() >= density)
+        continue;
+
+      String name = fillerName(i);
+      switch (i % 4) {
+        case 0:
+          settings.put(name, i + 1);
+          break;
+        case 1:
+          settings.put(name, true);
+          break;
+        case 2:
+          settings.put(name, i / 4.0 + 1);
+          break;
+        default:
+          settings.put(name, name + "-override");
+          break;
+      }
+    }
+    return settings;
+  }
+
+  private static String fillerName(int index) {
+    return "field" + index;
+  }
+
+  private static ArrayNode group(ArrayNode groups, String name) {
+    ObjectNode group = groups.addObject();
+    group.put("group", name);
+    return group.putArray("fields");
+  }
+
+  private static ObjectNode field(ArrayNode fields, String type, String name, String valueType) {
+    ObjectNode field = fields.addObject();
+    field.put("@class", FIELD_CLASS + type);
+    field.put("field", name);
+    field.put("label", name);
+    field.put("type", valueType);
+    return field;
+  }
+}
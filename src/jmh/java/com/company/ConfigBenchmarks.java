@@ -0,0 +1,39 @@
+package com.company;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks once per thread count with the GC profiler, so every result carries an
+ * allocation rate (gc.alloc.rate.norm is bytes per operation). Results are also written as JSON,
+ * one file per thread count, for comparing a change against its base.
+ * <p>
+ * Arguments: benchmark regex, comma separated thread counts, result directory.
+ */
+public class ConfigBenchmarks {
+
+  public static void main(String[] args) throws Exception {
+    String include = args.length > 0 ? args[0] : SystemConfigUtilBenchmark.class.getSimpleName();
+    String threadCounts = args.length > 1 ? args[1] : "1";
+    File resultDir = new File(args.length > 2 ? args[2] : "build/reports/jmh");
+    resultDir.mkdirs();
+
+    for (String threadCount : threadCounts.split(",")) {
+      int threads = Integer.parseInt(threadCount.trim());
+      Options options = new OptionsBuilder()
+        .include(include)
+        .threads(threads)
+        .addProfiler(GCProfiler.class)
+        .resultFormat(ResultFormatType.JSON)
+        .result(new File(resultDir, "results-" + threads + "-threads.json").getPath())
+        .build();
+
+      new Runner(options).run();
+    }
+  }
+}
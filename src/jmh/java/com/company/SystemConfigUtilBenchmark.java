@@ -0,0 +1,112 @@
+package com.company;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the SystemConfigUtil read and write paths over generated schemas, with tenant
+ * configs held in an in-memory store. Reads hit warm tenant caches; the thread count is swept by
+ * {@link ConfigBenchmarks}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SystemConfigUtilBenchmark {
+  private static final int TENANTS = 1024;
+
+  @Param({"16", "128", "1024"})
+  private int schemaSize;
+
+  @Param({"0.0", "0.1", "0.5"})
+  private double overrideDensity;
+
+  private SystemConfigUtil configUtil;
+  private String[] tenantIds;
+  private ObjectNode savedConfig;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    configUtil = new SystemConfigUtil(BenchmarkSchemas.schema(schemaSize));
+    InMemoryTenantConfigStore store = new InMemoryTenantConfigStore();
+    configUtil.setStore(store);
+
+    Random random = new Random(42);
+    tenantIds = new String[TENANTS];
+    for (int i = 0; i < TENANTS; i++) {
+      tenantIds[i] = "tenant" + i;
+      ObjectNode settings = BenchmarkSchemas.overrides(schemaSize, overrideDensity, random);
+      if (settings.size() > 0)
+        configUtil.applySettings(tenantIds[i], settings.toString());
+      configUtil.getTenantSnapshot(tenantIds[i]);
+    }
+    savedConfig = BenchmarkSchemas.overrides(schemaSize, overrideDensity, random);
+  }
+
+  /**
+   * Per-thread position in the tenant list, so threads spread over tenants instead of contending on one.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next = ThreadLocalRandom.current().nextInt(TENANTS);
+    private int value;
+
+    String nextTenant(String[] tenantIds) {
+      next = next + 1 == tenantIds.length ? 0 : next + 1;
+      return tenantIds[next];
+    }
+
+    int nextValue() {
+      return ++value;
+    }
+  }
+
+  @Benchmark
+  public int getKeyAsInteger(Cursor cursor) throws Exception {
+    return configUtil.getKeyAsInteger(cursor.nextTenant(tenantIds), "maxResults");
+  }
+
+  @Benchmark
+  public List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> getSearchTypeWeights(Cursor cursor)
+    throws Exception {
+    return configUtil.getSearchTypeWeights(cursor.nextTenant(tenantIds));
+  }
+
+  @Benchmark
+  public String getTenantConfigJson(Cursor cursor) throws Exception {
+    return configUtil.getTenantConfigJson(cursor.nextTenant(tenantIds));
+  }
+
+  @Benchmark
+  public ObjectNode mergeToDefault() throws Exception {
+    return configUtil.mergeToDefault(savedConfig);
+  }
+
+  @Benchmark
+  public void applySettings(Cursor cursor) throws Exception {
+    configUtil.applySettings(cursor.nextTenant(tenantIds), "{\"maxResults\": " + cursor.nextValue() + "}");
+  }
+
+  @Benchmark
+  public String getDefaultConfigJson() throws Exception {
+    return configUtil.getDefaultConfigJson();
+  }
+}
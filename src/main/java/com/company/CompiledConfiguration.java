@@ -0,0 +1,193 @@
+package com.company;
+
+import org.apache.commons.configuration2.CombinedConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.ex.ConversionException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable, flattened copy of a {@link CombinedConfiguration}. The layers are resolved once, with
+ * the combiner and interpolation of the combined configuration, and every value is converted to
+ * int, long, double and boolean up front where it can be, so a read is a single hash lookup with no
+ * parsing. Each key also records the layer its value came from.
+ * <p>
+ * Conversions follow the combined configuration: a getter fails with a ConversionException where
+ * the getter of the combined configuration would, and the primitive getters without a default fail
+ * with a NoSuchElementException for missing keys.
+ */
+public final class CompiledConfiguration {
+  private static final int INT = 1;
+  private static final int LONG = 2;
+  private static final int DOUBLE = 4;
+  private static final int BOOLEAN = 8;
+
+  private final Map<String, Entry> entries;
+
+  private CompiledConfiguration(Map<String, Entry> entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Flattens the current state of a combined configuration. Later changes to it are not seen.
+   */
+  public static CompiledConfiguration compile(CombinedConfiguration combined) {
+    Map<String, Entry> entries = new HashMap<>();
+    for (Iterator<String> keys = combined.getKeys(); keys.hasNext(); ) {
+      String key = keys.next();
+      entries.put(key, compile(combined, key));
+    }
+    return new CompiledConfiguration(Collections.unmodifiableMap(entries));
+  }
+
+  private static Entry compile(CombinedConfiguration combined, String key) {
+    int types = 0;
+    long longValue = 0;
+    double doubleValue = 0;
+    boolean booleanValue = false;
+
+    try {
+      longValue = combined.getLong(key);
+      types |= LONG;
+      if (longValue == (int) longValue)
+        types |= INT;
+    } catch (ConversionException e) {
+      // not a whole number
+    }
+    try {
+      doubleValue = combined.getDouble(key);
+      types |= DOUBLE;
+    } catch (ConversionException e) {
+      // not a number
+    }
+    try {
+      booleanValue = combined.getBoolean(key);
+      types |= BOOLEAN;
+    } catch (ConversionException e) {
+      // not a boolean
+    }
+
+    return new Entry(combined.getString(key), layerOf(combined, key), types, longValue, doubleValue, booleanValue);
+  }
+
+  /**
+   * Name of the first layer that has the key, or its position if it has no name.
+   */
+  private static String layerOf(CombinedConfiguration combined, String key) {
+    List<String> names = combined.getConfigurationNameList();
+    for (int i = 0; i < combined.getNumberOfConfigurations(); i++) {
+      Configuration layer = combined.getConfiguration(i);
+      if (layer.containsKey(key))
+        return names.get(i) != null ? names.get(i) : "#" + i;
+    }
+    return null;
+  }
+
+  public boolean containsKey(String key) {
+    return entries.containsKey(key);
+  }
+
+  public Set<String> getKeys() {
+    return entries.keySet();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the name of the layer the value of a key came from, or null if there is no such key.
+   */
+  public String getLayer(String key) {
+    Entry entry = entries.get(key);
+    return entry == null ? null : entry.layer;
+  }
+
+  public String getString(String key) {
+    Entry entry = entries.get(key);
+    return entry == null ? null : entry.text;
+  }
+
+  public String getString(String key, String defaultValue) {
+    Entry entry = entries.get(key);
+    return entry == null ? defaultValue : entry.text;
+  }
+
+  public int getInt(String key) {
+    return (int) require(key, INT, "an int").longValue;
+  }
+
+  public int getInt(String key, int defaultValue) {
+    Entry entry = find(key, INT, "an int");
+    return entry == null ? defaultValue : (int) entry.longValue;
+  }
+
+  public long getLong(String key) {
+    return require(key, LONG, "a long").longValue;
+  }
+
+  public long getLong(String key, long defaultValue) {
+    Entry entry = find(key, LONG, "a long");
+    return entry == null ? defaultValue : entry.longValue;
+  }
+
+  public double getDouble(String key) {
+    return require(key, DOUBLE, "a double").doubleValue;
+  }
+
+  public double getDouble(String key, double defaultValue) {
+    Entry entry = find(key, DOUBLE, "a double");
+    return entry == null ? defaultValue : entry.doubleValue;
+  }
+
+  public boolean getBoolean(String key) {
+    return require(key, BOOLEAN, "a boolean").booleanValue;
+  }
+
+  public boolean getBoolean(String key, boolean defaultValue) {
+    Entry entry = find(key, BOOLEAN, "a boolean");
+    return entry == null ? defaultValue : entry.booleanValue;
+  }
+
+  private Entry require(String key, int type, String description) {
+    Entry entry = find(key, type, description);
+    if (entry == null)
+      throw new NoSuchElementException("Key '" + key + "' does not map to an existing object!");
+    return entry;
+  }
+
+  /**
+   * Returns the entry of a key, or null if there is none; fails if its value does not convert to
+   * the type.
+   */
+  private Entry find(String key, int type, String description) {
+    Entry entry = entries.get(key);
+    if (entry != null && (entry.types & type) == 0)
+      throw new ConversionException("Key '" + key + "' with value " + entry.text + " is not " + description);
+    return entry;
+  }
+
+  private static final class Entry {
+    final String text;
+    final String layer;
+    final int types;
+    final long longValue;
+    final double doubleValue;
+    final boolean booleanValue;
+
+    Entry(String text, String layer, int types, long longValue, double doubleValue, boolean booleanValue) {
+      this.text = text;
+      this.layer = layer;
+      this.types = types;
+      this.longValue = longValue;
+      this.doubleValue = doubleValue;
+      this.booleanValue = booleanValue;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.company;
+
+/**
+ * Receives measurements from {@link SystemConfigUtil}. All methods default to no-ops, and
+ * {@link #start()} does not read the clock unless overridden, so the {@link #NONE} instance costs
+ * next to nothing on the read path.
+ */
+public interface ConfigMetrics {
+  ConfigMetrics NONE = new ConfigMetrics() {
+  };
+
+  /**
+   * Measured operations; public SystemConfigUtil methods plus the loading of tenant configs.
+   */
+  enum Operation {
+    LOAD_TENANT_CONFIG("loadTenantConfig"),
+    GET_TENANT_SNAPSHOT("getTenantSnapshot"),
+    GET_TENANT_CONFIG("getTenantConfig"),
+    GET_TENANT_CONFIG_JSON("getTenantConfigJson"),
+    GET_CONFIG_JSON("getConfigJson"),
+    GET_KEYS("getKeys"),
+    GET_KEY_AS_INTEGER("getKeyAsInteger"),
+    GET_KEY_AS_BOOLEAN("getKeyAsBoolean"),
+    GET_KEY_AS_FLOAT("getKeyAsFloat"),
+    GET_KEY_AS_STRING("getKeyAsString"),
+    GET_ONTOLOGY_FILTER("getOntologyFilter"),
+    GET_SEARCH_ORDER("getSearchOrder"),
+    GET_SPAN_QUERY_SLOP("getSpanQuerySLOP"),
+    GET_SEARCH_TYPE_WEIGHTS("getSearchTypeWeights"),
+    MERGE_TO_DEFAULT("mergeToDefault"),
+    APPLY_SETTINGS("applySettings"),
+    APPLY_SETTINGS_TO_CONFIG("applySettingsToConfig"),
+    APPLY_SETTINGS_TO_SNAPSHOT("applySettingsToSnapshot"),
+    MIGRATE_TO_DELTA("migrateToDelta");
+
+    private final String methodName;
+
+    Operation(String methodName) {
+      this.methodName = methodName;
+    }
+
+    public String getMethodName() {
+      return methodName;
+    }
+  }
+
+  /**
+   * Returns the start time to pass to {@link #recordLatency}.
+   */
+  default long start() {
+    return 0L;
+  }
+
+  default void recordLatency(Operation operation, long start) {
+  }
+
+  /**
+   * A read of a stored tenant config; bytes is the UTF-8 length of the stored string, 0 if there was none.
+   */
+  default void recordStoreRead(int bytes) {
+  }
+
+  /**
+   * A conditional write of a tenant config, which was rejected if the stored config had changed;
+   * bytes is the UTF-8 length of the written string.
+   */
+  default void recordStoreWrite(int bytes, boolean written) {
+  }
+
+  /**
+   * A parse of the full system configuration into a new config tree.
+   */
+  default void recordSchemaParse() {
+  }
+
+  /**
+   * An exception that was logged or turned into a default value instead of being thrown.
+   */
+  default void recordSwallowedException(Operation operation, Exception e) {
+  }
+
+  /**
+   * A getter taking a default value returned it because the schema has no field with that key, or
+   * one of another kind.
+   */
+  default void recordMiss(String key, ConfigSchema.LookupStatus status) {
+  }
+}
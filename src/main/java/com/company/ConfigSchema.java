@@ -0,0 +1,246 @@
+package com.company;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable index over the system configuration schema. Every field gets a stable ordinal
+ * (its position in the schema, groups first) and can be found by name in constant time.
+ * <p>
+ * Compiling interns the metadata strings of the field definitions (name, label, type and class
+ * name), and {@link #shareMetadata} points copies of the config tree at those same instances, so
+ * the many trees handed out for tenants do not each hold their own copies.
+ */
+public class ConfigSchema {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigSchema.class);
+
+  private final List<FieldDescriptor> fields;
+  private final Map<String, FieldDescriptor> fieldsByName;
+  private final String fingerprint;
+
+  private ConfigSchema(List<FieldDescriptor> fields, Map<String, FieldDescriptor> fieldsByName) {
+    this.fields = fields;
+    this.fieldsByName = fieldsByName;
+    this.fingerprint = fingerprint(fields);
+  }
+
+  private static String fingerprint(List<FieldDescriptor> fields) {
+    CRC32 crc = new CRC32();
+    for (FieldDescriptor descriptor : fields) {
+      crc.update(descriptor.getName().getBytes(StandardCharsets.UTF_8));
+      crc.update(0);
+      crc.update(descriptor.getKind().name().getBytes(StandardCharsets.UTF_8));
+      crc.update(0);
+    }
+    return String.format("%08x", crc.getValue());
+  }
+
+  public static ConfigSchema compile(List<SystemConfig.SystemConfigMapper> configs) {
+    List<FieldDescriptor> fields = new ArrayList<>();
+    Map<String, FieldDescriptor> fieldsByName = new HashMap<>();
+
+    for (int groupIndex = 0; groupIndex < configs.size(); groupIndex++) {
+      List<SystemConfig.SystemConfigMapper.SingleField> groupFields = configs.get(groupIndex).getFields();
+      if (groupFields == null)
+        continue;
+
+      for (int fieldIndex = 0; fieldIndex < groupFields.size(); fieldIndex++) {
+        SystemConfig.SystemConfigMapper.SingleField field = groupFields.get(fieldIndex);
+        internMetadata(field);
+        FieldType type = FieldTypes.forField(field);
+        if (type == null) {
+          logger.warn("Ignoring field {} of unsupported type {}", field.getField(), field.getClass().getSimpleName());
+          continue;
+        }
+
+        FieldDescriptor descriptor = new FieldDescriptor(field.getField(), fields.size(), type, groupIndex, fieldIndex, field);
+        fields.add(descriptor);
+
+        // the last definition of a field wins, as it did for the list scans this index replaces
+        FieldDescriptor previous = fieldsByName.put(descriptor.getName(), descriptor);
+        if (previous != null)
+          logger.warn("Field {} is defined more than once in the system configuration", descriptor.getName());
+      }
+    }
+
+    return new ConfigSchema(Collections.unmodifiableList(fields), Collections.unmodifiableMap(fieldsByName));
+  }
+
+  private static void internMetadata(SystemConfig.SystemConfigMapper.SingleField field) {
+    field.setField(intern(field.getField()));
+    field.setLabel(intern(field.getLabel()));
+    field.setType(intern(field.getType()));
+    field.setClassName(intern(field.getClassName()));
+
+    if (field instanceof SystemConfig.SystemConfigMapper.SearchTypeWeightList) {
+      List<SystemConfig.SystemConfigMapper.SearchTypeWeight> weights = ((SystemConfig.SystemConfigMapper.SearchTypeWeightList) field).getFields();
+      if (weights != null) {
+        for (SystemConfig.SystemConfigMapper.SearchTypeWeight weight : weights) {
+          weight.setField(intern(weight.getField()));
+          if (weight instanceof SystemConfig.SystemConfigMapper.SearchTypeWeightName)
+            ((SystemConfig.SystemConfigMapper.SearchTypeWeightName) weight).setType(intern(((SystemConfig.SystemConfigMapper.SearchTypeWeightName) weight).getType()));
+        }
+      }
+    }
+  }
+
+  private static String intern(String value) {
+    return value == null ? null : value.intern();
+  }
+
+  /**
+   * Replaces the metadata strings of the fields of a config tree of the same shape as the schema,
+   * e.g. a freshly decoded copy, with the interned instances of the schema where they are equal.
+   */
+  public void shareMetadata(List<SystemConfig.SystemConfigMapper> configs) {
+    for (FieldDescriptor descriptor : fields) {
+      SystemConfig.SystemConfigMapper.SingleField definition = descriptor.getDefinition();
+      SystemConfig.SystemConfigMapper.SingleField field = descriptor.locate(configs);
+      if (field == definition)
+        continue;
+
+      field.setField(canonical(field.getField(), definition.getField()));
+      field.setLabel(canonical(field.getLabel(), definition.getLabel()));
+      field.setType(canonical(field.getType(), definition.getType()));
+      field.setClassName(canonical(field.getClassName(), definition.getClassName()));
+    }
+  }
+
+  private static String canonical(String value, String canonical) {
+    return value != null && value.equals(canonical) ? canonical : value;
+  }
+
+  /**
+   * All fields in ordinal order.
+   */
+  public List<FieldDescriptor> getFields() {
+    return fields;
+  }
+
+  public int size() {
+    return fields.size();
+  }
+
+  /**
+   * Short hash of the field names and kinds in ordinal order; changes whenever a field is added,
+   * removed, renamed, reordered or changes its kind.
+   */
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Returns the field with the given name, or null if the schema has no such field.
+   */
+  public FieldDescriptor getField(String name) {
+    return name == null ? null : fieldsByName.get(name);
+  }
+
+  /**
+   * Returns the field with the given name, or null if there is no such field or it is of another kind.
+   */
+  public FieldDescriptor getField(String name, FieldKind kind) {
+    FieldDescriptor descriptor = getField(name);
+    return descriptor != null && descriptor.getKind() == kind ? descriptor : null;
+  }
+
+  /**
+   * Returns whether the schema has a field with the given name and kind, and if not, why.
+   */
+  public LookupStatus lookup(String name, FieldKind kind) {
+    FieldDescriptor descriptor = getField(name);
+    if (descriptor == null)
+      return LookupStatus.MISSING;
+
+    return descriptor.getKind() == kind ? LookupStatus.FOUND : LookupStatus.WRONG_TYPE;
+  }
+
+  public enum LookupStatus {
+    FOUND,
+    MISSING,
+    WRONG_TYPE
+  }
+
+  public enum FieldKind {
+    INTEGER,
+    BOOL,
+    STRING,
+    DECIMAL,
+    INTEGER_LIST,
+    ONTOLOGY_LIST,
+    SEARCH_TYPE_LIST,
+    SEARCH_TYPE_WEIGHT_LIST,
+    LONG,
+    STRING_LIST,
+    DURATION,
+    STRING_MAP;
+
+    /**
+     * Returns the kind of a field, or null if no field type is registered for it.
+     */
+    public static FieldKind of(SystemConfig.SystemConfigMapper.SingleField field) {
+      FieldType type = FieldTypes.forField(field);
+      return type == null ? null : type.getKind();
+    }
+  }
+
+  public static class FieldDescriptor {
+    private final String name;
+    private final int ordinal;
+    private final FieldType type;
+    private final int groupIndex;
+    private final int fieldIndex;
+    private final SystemConfig.SystemConfigMapper.SingleField definition;
+
+    FieldDescriptor(String name, int ordinal, FieldType type, int groupIndex, int fieldIndex,
+                    SystemConfig.SystemConfigMapper.SingleField definition) {
+      this.name = name;
+      this.ordinal = ordinal;
+      this.type = type;
+      this.groupIndex = groupIndex;
+      this.fieldIndex = fieldIndex;
+      this.definition = definition;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getOrdinal() {
+      return ordinal;
+    }
+
+    public FieldKind getKind() {
+      return type.getKind();
+    }
+
+    /**
+     * The handler of the field's type, resolved when the schema was compiled.
+     */
+    public FieldType getType() {
+      return type;
+    }
+
+    /**
+     * The field as defined in the default configuration.
+     */
+    public SystemConfig.SystemConfigMapper.SingleField getDefinition() {
+      return definition;
+    }
+
+    /**
+     * Returns this field within a config tree of the same shape as the schema, e.g. a tenant config.
+     */
+    public SystemConfig.SystemConfigMapper.SingleField locate(List<SystemConfig.SystemConfigMapper> configs) {
+      return configs.get(groupIndex).getFields().get(fieldIndex);
+    }
+  }
+}
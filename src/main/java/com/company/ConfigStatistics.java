@@ -0,0 +1,305 @@
+package com.company;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics kept in memory: a latency histogram per operation with power-of-two buckets, and counters
+ * for store traffic, schema parses, swallowed exceptions and defaulted lookups. All updates are
+ * lock-free.
+ * <p>
+ * Defaulted lookups are counted per key, so callers probing keys the schema does not have can be
+ * found. At most {@link #MAX_MISS_KEYS} keys are tracked; misses of further keys are counted under
+ * {@link #OTHER_KEYS}.
+ */
+public class ConfigStatistics implements ConfigMetrics, ConfigStatisticsMBean {
+  public static final String OBJECT_NAME = "com.company:type=ConfigStatistics";
+
+  public static final int MAX_MISS_KEYS = 256;
+  public static final String OTHER_KEYS = "(other keys)";
+
+  private static final ConfigMetrics.Operation[] OPERATIONS = ConfigMetrics.Operation.values();
+
+  private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+  private final LongAdder[] swallowedExceptions = new LongAdder[OPERATIONS.length];
+  private final LongAdder storeReads = new LongAdder();
+  private final LongAdder storeReadBytes = new LongAdder();
+  private final LongAdder storeWrites = new LongAdder();
+  private final LongAdder storeWriteBytes = new LongAdder();
+  private final LongAdder storeWriteConflicts = new LongAdder();
+  private final LongAdder schemaParses = new LongAdder();
+
+  // per key: lookups of a missing field, lookups of a field of another kind
+  private final ConcurrentHashMap<String, LongAdder[]> misses = new ConcurrentHashMap<>();
+
+  public ConfigStatistics() {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      latencies[i] = new LatencyHistogram();
+      swallowedExceptions[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Registers this instance with the platform MBean server under {@link #OBJECT_NAME}.
+   */
+  public ObjectName register() throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    if (server.isRegistered(name))
+      server.unregisterMBean(name);
+
+    server.registerMBean(this, name);
+    return name;
+  }
+
+  @Override
+  public long start() {
+    return System.nanoTime();
+  }
+
+  @Override
+  public void recordLatency(ConfigMetrics.Operation operation, long start) {
+    latencies[operation.ordinal()].record(System.nanoTime() - start);
+  }
+
+  @Override
+  public void recordStoreRead(int bytes) {
+    storeReads.increment();
+    storeReadBytes.add(bytes);
+  }
+
+  @Override
+  public void recordStoreWrite(int bytes, boolean written) {
+    storeWrites.increment();
+    storeWriteBytes.add(bytes);
+    if (!written)
+      storeWriteConflicts.increment();
+  }
+
+  @Override
+  public void recordSchemaParse() {
+    schemaParses.increment();
+  }
+
+  @Override
+  public void recordSwallowedException(ConfigMetrics.Operation operation, Exception e) {
+    swallowedExceptions[operation.ordinal()].increment();
+  }
+
+  @Override
+  public void recordMiss(String key, ConfigSchema.LookupStatus status) {
+    String name = String.valueOf(key);
+    LongAdder[] counts = misses.get(name);
+    if (counts == null) {
+      if (misses.size() >= MAX_MISS_KEYS)
+        name = OTHER_KEYS;
+      counts = misses.computeIfAbsent(name, k -> new LongAdder[]{new LongAdder(), new LongAdder()});
+    }
+    counts[status == ConfigSchema.LookupStatus.WRONG_TYPE ? 1 : 0].increment();
+  }
+
+  @Override
+  public long getStoreReads() {
+    return storeReads.sum();
+  }
+
+  @Override
+  public long getStoreReadBytes() {
+    return storeReadBytes.sum();
+  }
+
+  @Override
+  public long getStoreWrites() {
+    return storeWrites.sum();
+  }
+
+  @Override
+  public long getStoreWriteBytes() {
+    return storeWriteBytes.sum();
+  }
+
+  @Override
+  public long getStoreWriteConflicts() {
+    return storeWriteConflicts.sum();
+  }
+
+  @Override
+  public long getSchemaParses() {
+    return schemaParses.sum();
+  }
+
+  @Override
+  public long getSwallowedExceptions() {
+    long total = 0;
+    for (LongAdder count : swallowedExceptions)
+      total += count.sum();
+    return total;
+  }
+
+  @Override
+  public long getMisses() {
+    long total = 0;
+    for (LongAdder[] counts : misses.values())
+      total += counts[0].sum() + counts[1].sum();
+    return total;
+  }
+
+  @Override
+  public long getMisses(String key) {
+    LongAdder[] counts = misses.get(key);
+    return counts == null ? 0 : counts[0].sum() + counts[1].sum();
+  }
+
+  @Override
+  public String[] getMissSummary() {
+    List<Map.Entry<String, long[]>> entries = new ArrayList<>();
+    for (Map.Entry<String, LongAdder[]> entry : misses.entrySet()) {
+      long[] counts = {entry.getValue()[0].sum(), entry.getValue()[1].sum()};
+      entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), counts));
+    }
+    entries.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> entry.getValue()[0] + entry.getValue()[1]).reversed());
+
+    String[] lines = new String[entries.size()];
+    for (int i = 0; i < lines.length; i++) {
+      Map.Entry<String, long[]> entry = entries.get(i);
+      lines[i] = String.format("%s missing=%d wrongType=%d", entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+    }
+    return lines;
+  }
+
+  @Override
+  public String[] getOperations() {
+    String[] names = new String[OPERATIONS.length];
+    for (int i = 0; i < OPERATIONS.length; i++)
+      names[i] = OPERATIONS[i].getMethodName();
+    return names;
+  }
+
+  @Override
+  public String[] getLatencySummary() {
+    List<String> lines = new ArrayList<>();
+    for (ConfigMetrics.Operation operation : OPERATIONS) {
+      LatencyHistogram histogram = latencies[operation.ordinal()];
+      long swallowed = swallowedExceptions[operation.ordinal()].sum();
+      if (histogram.count() == 0 && swallowed == 0)
+        continue;
+
+      lines.add(String.format("%s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus swallowed=%d",
+        operation.getMethodName(), histogram.count(), histogram.meanMicros(), histogram.percentileMicros(50),
+        histogram.percentileMicros(99), histogram.percentileMicros(99.9), swallowed));
+    }
+    return lines.toArray(new String[0]);
+  }
+
+  @Override
+  public long getCallCount(String operation) {
+    return latencies[operation(operation).ordinal()].count();
+  }
+
+  @Override
+  public double getMeanLatencyMicros(String operation) {
+    return latencies[operation(operation).ordinal()].meanMicros();
+  }
+
+  @Override
+  public double getLatencyPercentileMicros(String operation, double percentile) {
+    return latencies[operation(operation).ordinal()].percentileMicros(percentile);
+  }
+
+  @Override
+  public long getSwallowedExceptions(String operation) {
+    return swallowedExceptions[operation(operation).ordinal()].sum();
+  }
+
+  @Override
+  public void reset() {
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      latencies[i].reset();
+      swallowedExceptions[i].reset();
+    }
+    storeReads.reset();
+    storeReadBytes.reset();
+    storeWrites.reset();
+    storeWriteBytes.reset();
+    storeWriteConflicts.reset();
+    schemaParses.reset();
+    misses.clear();
+  }
+
+  private static ConfigMetrics.Operation operation(String name) {
+    for (ConfigMetrics.Operation operation : OPERATIONS) {
+      if (operation.getMethodName().equals(name) || operation.name().equals(name))
+        return operation;
+    }
+    throw new IllegalArgumentException("Unknown operation " + name);
+  }
+
+  /**
+   * Bucket i counts latencies below 2^i nanoseconds and at least 2^(i-1); bucket 0 counts zero.
+   */
+  private static class LatencyHistogram {
+    private final LongAdder[] buckets = new LongAdder[64];
+    private final LongAdder totalNanos = new LongAdder();
+
+    LatencyHistogram() {
+      for (int i = 0; i < buckets.length; i++)
+        buckets[i] = new LongAdder();
+    }
+
+    void record(long nanos) {
+      if (nanos < 0)
+        nanos = 0;
+      buckets[Math.min(63, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+      totalNanos.add(nanos);
+    }
+
+    long count() {
+      long count = 0;
+      for (LongAdder bucket : buckets)
+        count += bucket.sum();
+      return count;
+    }
+
+    double meanMicros() {
+      long count = count();
+      return count == 0 ? 0 : totalNanos.sum() / (double) count / 1000;
+    }
+
+    double percentileMicros(double percentile) {
+      long[] counts = new long[buckets.length];
+      long count = 0;
+      for (int i = 0; i < buckets.length; i++) {
+        counts[i] = buckets[i].sum();
+        count += counts[i];
+      }
+      if (count == 0)
+        return 0;
+
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+      long seen = 0;
+      int bucket = 0;
+      for (; bucket < counts.length - 1; bucket++) {
+        seen += counts[bucket];
+        if (seen >= rank)
+          break;
+      }
+      long upperBound = bucket == 63 ? Long.MAX_VALUE : 1L << bucket;
+      return upperBound / 1000.0;
+    }
+
+    void reset() {
+      for (LongAdder bucket : buckets)
+        bucket.reset();
+      totalNanos.reset();
+    }
+  }
+}
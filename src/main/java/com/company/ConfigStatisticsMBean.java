@@ -0,0 +1,56 @@
+package com.company;
+
+/**
+ * JMX view of {@link ConfigStatistics}. Operations are named after the SystemConfigUtil methods,
+ * e.g. getKeyAsInteger.
+ */
+public interface ConfigStatisticsMBean {
+
+  long getStoreReads();
+
+  long getStoreReadBytes();
+
+  long getStoreWrites();
+
+  long getStoreWriteBytes();
+
+  long getStoreWriteConflicts();
+
+  long getSchemaParses();
+
+  long getSwallowedExceptions();
+
+  /**
+   * Lookups through a getter taking a default value that returned the default because the key is
+   * not a field of the requested kind.
+   */
+  long getMisses();
+
+  long getMisses(String key);
+
+  /**
+   * One line per key with misses, most missed first: lookups of a missing field, lookups of a
+   * field of another kind.
+   */
+  String[] getMissSummary();
+
+  String[] getOperations();
+
+  /**
+   * One line per operation that was called: count, mean and percentiles in microseconds, swallowed exceptions.
+   */
+  String[] getLatencySummary();
+
+  long getCallCount(String operation);
+
+  double getMeanLatencyMicros(String operation);
+
+  /**
+   * Upper bound of the latency histogram bucket holding the given percentile (0-100), in microseconds.
+   */
+  double getLatencyPercentileMicros(String operation, double percentile);
+
+  long getSwallowedExceptions(String operation);
+
+  void reset();
+}
@@ -0,0 +1,51 @@
+package com.company;
+
+import com.aisera.common.config.DynamicProperties;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tenant config store backed by {@link DynamicProperties}.
+ * <p>
+ * DynamicProperties has no conditional write, so compareAndSet is a read followed by a write under
+ * a lock of this JVM, and is atomic with respect to writers in this JVM only. Two JVMs that read the
+ * same value can both succeed, and the first of the two writes is lost.
+ */
+public class DynamicPropertiesStore implements TenantConfigStore {
+  private final StripedLocks locks = new StripedLocks(64);
+
+  @Override
+  public Optional<String> get(String tenantId, String key) throws Exception {
+    AtomicReference<String> val = new AtomicReference<>();
+    DynamicProperties.getInstance().ifPresent(instance -> instance.getProperty(tenantId, key)
+      .ifPresent(item -> val.set(item)));
+    return Optional.ofNullable(val.get());
+  }
+
+  @Override
+  public void put(String tenantId, String key, String value) throws Exception {
+    Optional<DynamicProperties> properties = DynamicProperties.getInstance();
+    if (!properties.isPresent())
+      throw new IllegalStateException("DynamicProperties is not available");
+
+    properties.get().setProperty(tenantId, key, value);
+  }
+
+  @Override
+  public boolean compareAndSet(String tenantId, String key, String expected, String value) throws Exception {
+    ReentrantLock lock = locks.get(tenantId);
+    lock.lock();
+    try {
+      if (!Objects.equals(expected, get(tenantId, key).orElse(null)))
+        return false;
+
+      put(tenantId, key, value);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
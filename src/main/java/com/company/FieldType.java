@@ -0,0 +1,139 @@
+package com.company;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+
+/**
+ * Handler for one type of system configuration field: reads its values from JSON, keeps them in
+ * snapshots, writes them into config trees and renders them as JSON. The schema resolves the
+ * handler of every field once when it is compiled (see {@link FieldTypes}), so walking the fields
+ * of a config costs one virtual call per field instead of a type test against every field class.
+ * <p>
+ * A value has two forms: the one held by config trees, which callers may modify (e.g. a List of
+ * ontologies), and the immutable one held by snapshots (e.g. an {@link OntologyFilter}). Integer,
+ * long, decimal and boolean values are kept in snapshots as raw bits; their handlers override the
+ * per-field operations to read and write those bits without boxing.
+ */
+public abstract class FieldType {
+  private final Class<? extends SystemConfig.SystemConfigMapper.SingleField> fieldClass;
+  private final ConfigSchema.FieldKind kind;
+
+  protected FieldType(Class<? extends SystemConfig.SystemConfigMapper.SingleField> fieldClass, ConfigSchema.FieldKind kind) {
+    this.fieldClass = fieldClass;
+    this.kind = kind;
+  }
+
+  public Class<? extends SystemConfig.SystemConfigMapper.SingleField> getFieldClass() {
+    return fieldClass;
+  }
+
+  public ConfigSchema.FieldKind getKind() {
+    return kind;
+  }
+
+  /**
+   * Returns whether snapshots keep values of this type as raw bits, see {@link #toBits}.
+   */
+  public boolean isPrimitive() {
+    return false;
+  }
+
+  /**
+   * Reads the value the parser is positioned on, in tree form. Returns null for a JSON null, and
+   * throws IllegalArgumentException for an invalid value after consuming all of it.
+   */
+  public abstract Object read(JsonParser parser) throws IOException;
+
+  public Object read(JsonNode node) throws IOException {
+    try (JsonParser parser = node.traverse()) {
+      parser.nextToken();
+      return read(parser);
+    }
+  }
+
+  /**
+   * Returns the value of a field of a config tree, in tree form.
+   */
+  public abstract Object getValue(SystemConfig.SystemConfigMapper.SingleField field);
+
+  /**
+   * Sets the value of a field of a config tree, given in tree form.
+   */
+  public abstract void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value);
+
+  /**
+   * Converts a tree value into its immutable snapshot form.
+   */
+  public Object freeze(SystemConfig.SystemConfigMapper.SingleField definition, Object value) {
+    return value;
+  }
+
+  /**
+   * Converts a snapshot value into a tree value that a config tree may own and modify.
+   */
+  public Object thaw(Object value) {
+    return value;
+  }
+
+  /**
+   * Returns the default value of a field definition in snapshot form.
+   */
+  public Object getDefault(SystemConfig.SystemConfigMapper.SingleField definition) {
+    return freeze(definition, getValue(definition));
+  }
+
+  /**
+   * Returns the raw bits a snapshot keeps for a value of a primitive type.
+   */
+  public long toBits(Object value) {
+    throw new UnsupportedOperationException(kind + " values are not kept as bits");
+  }
+
+  /**
+   * Returns the value of a field of a snapshot, boxed if it is primitive.
+   */
+  public Object get(TenantConfigSnapshot snapshot, int ordinal) {
+    return snapshot.getObject(ordinal);
+  }
+
+  /**
+   * Writes a value, in tree or snapshot form, into a JSON object.
+   */
+  public void write(ObjectNode node, String name, Object value) {
+    node.putPOJO(name, value);
+  }
+
+  /**
+   * Reads the value the parser is positioned on into a snapshot builder. A JSON null leaves the
+   * builder unchanged.
+   */
+  public void decode(JsonParser parser, TenantConfigSnapshot.Builder builder, int ordinal) throws IOException {
+    Object value = read(parser);
+    if (value != null)
+      builder.setObject(ordinal, value);
+  }
+
+  public void decode(JsonNode node, TenantConfigSnapshot.Builder builder, int ordinal) throws IOException {
+    try (JsonParser parser = node.traverse()) {
+      parser.nextToken();
+      decode(parser, builder, ordinal);
+    }
+  }
+
+  /**
+   * Writes the value of a field of a snapshot into a JSON object.
+   */
+  public void encode(TenantConfigSnapshot snapshot, int ordinal, ObjectNode node, String name) {
+    write(node, name, get(snapshot, ordinal));
+  }
+
+  /**
+   * Copies the value of a field of a snapshot into the same field of a config tree.
+   */
+  public void applyTo(TenantConfigSnapshot snapshot, int ordinal, SystemConfig.SystemConfigMapper.SingleField field) {
+    setValue(field, thaw(get(snapshot, ordinal)));
+  }
+}
@@ -0,0 +1,715 @@
+package com.company;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the field types of the system configuration, by field class and by kind.
+ * <p>
+ * Additional types are registered with {@link #register} before the schema is compiled; a type
+ * registered for a field class replaces the built-in one. Fields whose class has no type are
+ * ignored by the schema.
+ */
+public final class FieldTypes {
+  private static final Logger logger = LoggerFactory.getLogger(FieldTypes.class);
+
+  private static final Map<Class<?>, FieldType> typesByClass = new ConcurrentHashMap<>();
+  private static final Map<ConfigSchema.FieldKind, FieldType> typesByKind = new ConcurrentHashMap<>();
+
+  static {
+    register(new IntegerType());
+    register(new LongType());
+    register(new BoolType());
+    register(new DecimalType());
+    register(new StringType());
+    register(new DurationType());
+    register(new IntegerListType());
+    register(new StringListType());
+    register(new OntologyListType());
+    register(new SearchTypeListType());
+    register(new SearchTypeWeightListType());
+    register(new StringMapType());
+  }
+
+  private FieldTypes() {
+  }
+
+  public static void register(FieldType type) {
+    typesByClass.put(type.getFieldClass(), type);
+    typesByKind.put(type.getKind(), type);
+  }
+
+  /**
+   * Returns the type of a field, or null if its class, and every superclass up to SingleField, has
+   * none.
+   */
+  public static FieldType forField(SystemConfig.SystemConfigMapper.SingleField field) {
+    for (Class<?> type = field.getClass(); type != SystemConfig.SystemConfigMapper.SingleField.class; type = type.getSuperclass()) {
+      FieldType fieldType = typesByClass.get(type);
+      if (fieldType != null)
+        return fieldType;
+    }
+    return null;
+  }
+
+  public static FieldType forKind(ConfigSchema.FieldKind kind) {
+    return typesByKind.get(kind);
+  }
+
+  /**
+   * Fails on an array or object where a single value is expected, after skipping it, so the parser
+   * is not left inside the structure.
+   */
+  static void requireScalar(JsonParser parser) throws IOException {
+    if (parser.getCurrentToken() == JsonToken.START_ARRAY || parser.getCurrentToken() == JsonToken.START_OBJECT) {
+      JsonToken token = parser.getCurrentToken();
+      parser.skipChildren();
+      throw new IllegalArgumentException("expected a single value but found " + token);
+    }
+  }
+
+  static <E extends Enum<E>> E readEnum(Class<E> type, JsonParser parser) throws IOException {
+    String name = parser.getValueAsString();
+    try {
+      return Enum.valueOf(type, name);
+    } catch (RuntimeException e) {
+      parser.skipChildren();
+      throw new IllegalArgumentException("invalid " + type.getSimpleName() + " value " + name);
+    }
+  }
+
+  private static final class IntegerType extends FieldType {
+    IntegerType() {
+      super(SystemConfig.SystemConfigMapper.IntegerField.class, ConfigSchema.FieldKind.INTEGER);
+    }
+
+    @Override
+    public boolean isPrimitive() {
+      return true;
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      requireScalar(parser);
+      return parser.getValueAsInt();
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.IntegerField) field).getDefaultValue();
+    }
+
+    @Override
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.IntegerField) field).setDefaultValue(((Number) value).intValue());
+    }
+
+    @Override
+    public long toBits(Object value) {
+      return ((Number) value).intValue();
+    }
+
+    @Override
+    public Object get(TenantConfigSnapshot snapshot, int ordinal) {
+      return snapshot.getInt(ordinal);
+    }
+
+    @Override
+    public void write(ObjectNode node, String name, Object value) {
+      node.put(name, ((Number) value).intValue());
+    }
+
+    @Override
+    public void decode(JsonParser parser, TenantConfigSnapshot.Builder builder, int ordinal) throws IOException {
+      requireScalar(parser);
+      builder.setInt(ordinal, parser.getValueAsInt());
+    }
+
+    @Override
+    public void encode(TenantConfigSnapshot snapshot, int ordinal, ObjectNode node, String name) {
+      node.put(name, snapshot.getInt(ordinal));
+    }
+
+    @Override
+    public void applyTo(TenantConfigSnapshot snapshot, int ordinal, SystemConfig.SystemConfigMapper.SingleField field) {
+      ((SystemConfig.SystemConfigMapper.IntegerField) field).setDefaultValue(snapshot.getInt(ordinal));
+    }
+  }
+
+  private static final class LongType extends FieldType {
+    LongType() {
+      super(SystemConfig.SystemConfigMapper.LongField.class, ConfigSchema.FieldKind.LONG);
+    }
+
+    @Override
+    public boolean isPrimitive() {
+      return true;
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      requireScalar(parser);
+      return parser.getValueAsLong();
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.LongField) field).getDefaultValue();
+    }
+
+    @Override
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.LongField) field).setDefaultValue(((Number) value).longValue());
+    }
+
+    @Override
+    public long toBits(Object value) {
+      return ((Number) value).longValue();
+    }
+
+    @Override
+    public Object get(TenantConfigSnapshot snapshot, int ordinal) {
+      return snapshot.getLong(ordinal);
+    }
+
+    @Override
+    public void write(ObjectNode node, String name, Object value) {
+      node.put(name, ((Number) value).longValue());
+    }
+
+    @Override
+    public void decode(JsonParser parser, TenantConfigSnapshot.Builder builder, int ordinal) throws IOException {
+      requireScalar(parser);
+      builder.setLong(ordinal, parser.getValueAsLong());
+    }
+
+    @Override
+    public void encode(TenantConfigSnapshot snapshot, int ordinal, ObjectNode node, String name) {
+      node.put(name, snapshot.getLong(ordinal));
+    }
+
+    @Override
+    public void applyTo(TenantConfigSnapshot snapshot, int ordinal, SystemConfig.SystemConfigMapper.SingleField field) {
+      ((SystemConfig.SystemConfigMapper.LongField) field).setDefaultValue(snapshot.getLong(ordinal));
+    }
+  }
+
+  private static final class BoolType extends FieldType {
+    BoolType() {
+      super(SystemConfig.SystemConfigMapper.BoolField.class, ConfigSchema.FieldKind.BOOL);
+    }
+
+    @Override
+    public boolean isPrimitive() {
+      return true;
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      requireScalar(parser);
+      return parser.getValueAsBoolean();
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.BoolField) field).isDefaultValue();
+    }
+
+    @Override
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.BoolField) field).setDefaultValue((Boolean) value);
+    }
+
+    @Override
+    public long toBits(Object value) {
+      return (Boolean) value ? 1 : 0;
+    }
+
+    @Override
+    public Object get(TenantConfigSnapshot snapshot, int ordinal) {
+      return snapshot.getBoolean(ordinal);
+    }
+
+    @Override
+    public void write(ObjectNode node, String name, Object value) {
+      node.put(name, (Boolean) value);
+    }
+
+    @Override
+    public void decode(JsonParser parser, TenantConfigSnapshot.Builder builder, int ordinal) throws IOException {
+      requireScalar(parser);
+      builder.setBoolean(ordinal, parser.getValueAsBoolean());
+    }
+
+    @Override
+    public void encode(TenantConfigSnapshot snapshot, int ordinal, ObjectNode node, String name) {
+      node.put(name, snapshot.getBoolean(ordinal));
+    }
+
+    @Override
+    public void applyTo(TenantConfigSnapshot snapshot, int ordinal, SystemConfig.SystemConfigMapper.SingleField field) {
+      ((SystemConfig.SystemConfigMapper.BoolField) field).setDefaultValue(snapshot.getBoolean(ordinal));
+    }
+  }
+
+  private static final class DecimalType extends FieldType {
+    DecimalType() {
+      super(SystemConfig.SystemConfigMapper.DecimalField.class, ConfigSchema.FieldKind.DECIMAL);
+    }
+
+    @Override
+    public boolean isPrimitive() {
+      return true;
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      requireScalar(parser);
+      return parser.getValueAsDouble();
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.DecimalField) field).getDefaultValue();
+    }
+
+    @Override
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.DecimalField) field).setDefaultValue(((Number) value).doubleValue());
+    }
+
+    @Override
+    public long toBits(Object value) {
+      return Double.doubleToRawLongBits(((Number) value).doubleValue());
+    }
+
+    @Override
+    public Object get(TenantConfigSnapshot snapshot, int ordinal) {
+      return snapshot.getDouble(ordinal);
+    }
+
+    @Override
+    public void write(ObjectNode node, String name, Object value) {
+      node.put(name, ((Number) value).doubleValue());
+    }
+
+    @Override
+    public void decode(JsonParser parser, TenantConfigSnapshot.Builder builder, int ordinal) throws IOException {
+      requireScalar(parser);
+      builder.setDouble(ordinal, parser.getValueAsDouble());
+    }
+
+    @Override
+    public void encode(TenantConfigSnapshot snapshot, int ordinal, ObjectNode node, String name) {
+      node.put(name, snapshot.getDouble(ordinal));
+    }
+
+    @Override
+    public void applyTo(TenantConfigSnapshot snapshot, int ordinal, SystemConfig.SystemConfigMapper.SingleField field) {
+      ((SystemConfig.SystemConfigMapper.DecimalField) field).setDefaultValue(snapshot.getDouble(ordinal));
+    }
+  }
+
+  private static final class StringType extends FieldType {
+    StringType() {
+      super(SystemConfig.SystemConfigMapper.StringField.class, ConfigSchema.FieldKind.STRING);
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      requireScalar(parser);
+      return parser.getValueAsString();
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.StringField) field).getDefaultValue();
+    }
+
+    @Override
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.StringField) field).setDefaultValue((String) value);
+    }
+
+    @Override
+    public void write(ObjectNode node, String name, Object value) {
+      node.put(name, (String) value);
+    }
+
+    /**
+     * Unlike other object values, a JSON null is kept: a tenant may clear a string setting.
+     */
+    @Override
+    public void decode(JsonParser parser, TenantConfigSnapshot.Builder builder, int ordinal) throws IOException {
+      builder.setObject(ordinal, read(parser));
+    }
+  }
+
+  /**
+   * Durations are ISO-8601 strings such as PT30S in config trees and JSON, and {@link Duration}s in
+   * snapshots. Stored values may also be given as a number of milliseconds.
+   */
+  private static final class DurationType extends FieldType {
+    DurationType() {
+      super(SystemConfig.SystemConfigMapper.DurationField.class, ConfigSchema.FieldKind.DURATION);
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      switch (parser.getCurrentToken()) {
+        case VALUE_NULL:
+          return null;
+        case VALUE_NUMBER_INT:
+          return Duration.ofMillis(parser.getLongValue());
+        case VALUE_STRING:
+          return parse(parser.getText());
+        default:
+          requireScalar(parser);
+          throw new IllegalArgumentException("expected a duration but found " + parser.getCurrentToken());
+      }
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.DurationField) field).getDefaultValue();
+    }
+
+    @Override
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.DurationField) field).setDefaultValue(value == null ? null : value.toString());
+    }
+
+    @Override
+    public Object freeze(SystemConfig.SystemConfigMapper.SingleField definition, Object value) {
+      return value instanceof String ? parse((String) value) : value;
+    }
+
+    @Override
+    public Object thaw(Object value) {
+      return value == null ? null : value.toString();
+    }
+
+    @Override
+    public void write(ObjectNode node, String name, Object value) {
+      node.put(name, value == null ? null : value.toString());
+    }
+
+    private static Duration parse(String text) {
+      try {
+        return Duration.parse(text);
+      } catch (DateTimeParseException e) {
+        throw new IllegalArgumentException("invalid duration " + text);
+      }
+    }
+  }
+
+  /**
+   * Lists are arrays in JSON, modifiable lists in config trees and unmodifiable lists, or a
+   * precomputed form, in snapshots.
+   */
+  private abstract static class ListType extends FieldType {
+    ListType(Class<? extends SystemConfig.SystemConfigMapper.SingleField> fieldClass, ConfigSchema.FieldKind kind) {
+      super(fieldClass, kind);
+    }
+
+    /**
+     * Reads the element the parser is positioned on, throwing IllegalArgumentException after
+     * consuming it if it is invalid.
+     */
+    protected abstract Object readElement(JsonParser parser) throws IOException;
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      if (parser.getCurrentToken() == JsonToken.VALUE_NULL)
+        return null;
+
+      if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+        parser.skipChildren();
+        throw new IllegalArgumentException("expected an array but found " + parser.getCurrentToken());
+      }
+
+      List<Object> values = new ArrayList<>();
+      String invalid = null;
+
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        try {
+          values.add(readElement(parser));
+        } catch (IllegalArgumentException e) {
+          invalid = e.getMessage();
+        }
+      }
+
+      if (invalid != null)
+        throw new IllegalArgumentException(invalid);
+
+      return values;
+    }
+
+    @Override
+    public Object freeze(SystemConfig.SystemConfigMapper.SingleField definition, Object value) {
+      return value == null ? null : Collections.unmodifiableList(new ArrayList<>((List<?>) value));
+    }
+
+    @Override
+    public Object thaw(Object value) {
+      return value == null ? null : new ArrayList<>((List<?>) value);
+    }
+  }
+
+  private static final class IntegerListType extends ListType {
+    IntegerListType() {
+      super(SystemConfig.SystemConfigMapper.IntegerList.class, ConfigSchema.FieldKind.INTEGER_LIST);
+    }
+
+    @Override
+    protected Object readElement(JsonParser parser) throws IOException {
+      requireScalar(parser);
+      return parser.getValueAsInt();
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.IntegerList) field).getDefaultValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.IntegerList) field).setDefaultValue((List<Integer>) value);
+    }
+  }
+
+  private static final class StringListType extends ListType {
+    StringListType() {
+      super(SystemConfig.SystemConfigMapper.StringList.class, ConfigSchema.FieldKind.STRING_LIST);
+    }
+
+    @Override
+    protected Object readElement(JsonParser parser) throws IOException {
+      requireScalar(parser);
+      return parser.getValueAsString();
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.StringList) field).getDefaultValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.StringList) field).setDefaultValue((List<String>) value);
+    }
+  }
+
+  private static final class OntologyListType extends ListType {
+    OntologyListType() {
+      super(SystemConfig.SystemConfigMapper.OntologyList.class, ConfigSchema.FieldKind.ONTOLOGY_LIST);
+    }
+
+    @Override
+    protected Object readElement(JsonParser parser) throws IOException {
+      return readEnum(SystemConfig.SystemConfigMapper.Ontology.class, parser);
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.OntologyList) field).getDefaultValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.OntologyList) field).setDefaultValue((List<SystemConfig.SystemConfigMapper.Ontology>) value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object freeze(SystemConfig.SystemConfigMapper.SingleField definition, Object value) {
+      return value == null ? null : OntologyFilter.of((List<SystemConfig.SystemConfigMapper.Ontology>) value);
+    }
+  }
+
+  private static final class SearchTypeListType extends ListType {
+    SearchTypeListType() {
+      super(SystemConfig.SystemConfigMapper.SearchTypeList.class, ConfigSchema.FieldKind.SEARCH_TYPE_LIST);
+    }
+
+    @Override
+    protected Object readElement(JsonParser parser) throws IOException {
+      return readEnum(SystemConfig.SystemConfigMapper.SearchType.class, parser);
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.SearchTypeList) field).getDefaultValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.SearchTypeList) field).setDefaultValue((List<SystemConfig.SystemConfigMapper.SearchType>) value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object freeze(SystemConfig.SystemConfigMapper.SingleField definition, Object value) {
+      return value == null ? null : SearchOrder.of((List<SystemConfig.SystemConfigMapper.SearchType>) value);
+    }
+  }
+
+  private static final class SearchTypeWeightListType extends ListType {
+    SearchTypeWeightListType() {
+      super(SystemConfig.SystemConfigMapper.SearchTypeWeightList.class, ConfigSchema.FieldKind.SEARCH_TYPE_WEIGHT_LIST);
+    }
+
+    @Override
+    protected Object readElement(JsonParser parser) throws IOException {
+      if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        throw new IllegalArgumentException("expected a search type weight object");
+      }
+
+      SystemConfig.SystemConfigMapper.SearchTypeWeightDefault weight = new SystemConfig.SystemConfigMapper.SearchTypeWeightDefault();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+
+        if ("searchType".equals(name))
+          weight.setSearchType(parser.getValueAsString());
+        else if ("weight".equals(name))
+          weight.setWeight(parser.getValueAsDouble());
+        else
+          parser.skipChildren();
+      }
+      return weight;
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.SearchTypeWeightList) field).getDefaultValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.SearchTypeWeightList) field).setDefaultValue((List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault>) value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object freeze(SystemConfig.SystemConfigMapper.SingleField definition, Object value) {
+      boolean unique = ((SystemConfig.SystemConfigMapper.SearchTypeWeightList) definition).isUnique();
+      return value == null ? null : SearchTypeWeights.of((List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault>) value, unique);
+    }
+
+    /**
+     * A default that lists a search type twice although the field is unique is logged and kept with
+     * the last weight winning, rather than failing the whole schema.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object getDefault(SystemConfig.SystemConfigMapper.SingleField definition) {
+      Object value = getValue(definition);
+      try {
+        return freeze(definition, value);
+      } catch (IllegalArgumentException e) {
+        logger.error("Invalid default of {} for reason: {}", definition.getField(), e.getMessage());
+        return SearchTypeWeights.of((List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault>) value, false);
+      }
+    }
+
+    /**
+     * Copies the entries too, since they are mutable beans.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object thaw(Object value) {
+      if (value == null)
+        return null;
+
+      List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> copy = new ArrayList<>();
+      for (SystemConfig.SystemConfigMapper.SearchTypeWeightDefault item : (List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault>) value) {
+        SystemConfig.SystemConfigMapper.SearchTypeWeightDefault entry = new SystemConfig.SystemConfigMapper.SearchTypeWeightDefault();
+        entry.setSearchType(item.getSearchType());
+        entry.setWeight(item.getWeight());
+        copy.add(entry);
+      }
+      return copy;
+    }
+  }
+
+  /**
+   * String maps are JSON objects with string values, modifiable maps in config trees and
+   * unmodifiable maps in snapshots. Keys keep their order.
+   */
+  private static final class StringMapType extends FieldType {
+    StringMapType() {
+      super(SystemConfig.SystemConfigMapper.StringMap.class, ConfigSchema.FieldKind.STRING_MAP);
+    }
+
+    @Override
+    public Object read(JsonParser parser) throws IOException {
+      if (parser.getCurrentToken() == JsonToken.VALUE_NULL)
+        return null;
+
+      if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        throw new IllegalArgumentException("expected an object but found " + parser.getCurrentToken());
+      }
+
+      Map<String, String> values = new LinkedHashMap<>();
+      String invalid = null;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        try {
+          requireScalar(parser);
+          values.put(name, parser.getValueAsString());
+        } catch (IllegalArgumentException e) {
+          invalid = "invalid value of " + name + ": " + e.getMessage();
+        }
+      }
+
+      if (invalid != null)
+        throw new IllegalArgumentException(invalid);
+
+      return values;
+    }
+
+    @Override
+    public Object getValue(SystemConfig.SystemConfigMapper.SingleField field) {
+      return ((SystemConfig.SystemConfigMapper.StringMap) field).getDefaultValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setValue(SystemConfig.SystemConfigMapper.SingleField field, Object value) {
+      ((SystemConfig.SystemConfigMapper.StringMap) field).setDefaultValue((Map<String, String>) value);
+    }
+
+    @Override
+    public Object freeze(SystemConfig.SystemConfigMapper.SingleField definition, Object value) {
+      return value == null ? null : Collections.unmodifiableMap(new LinkedHashMap<>((Map<?, ?>) value));
+    }
+
+    @Override
+    public Object thaw(Object value) {
+      return value == null ? null : new LinkedHashMap<>((Map<?, ?>) value);
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package com.company;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimated heap footprint of cached tenant configs, per tenant and in aggregate.
+ * <p>
+ * Sizes are estimated from the shapes of the objects as a 64-bit Java 8 VM with compressed oops
+ * lays them out (12 byte object headers, 16 byte array headers, 4 byte references, 8 byte
+ * alignment), not measured, so they are meant for comparing tenants and watching trends. Enum
+ * constants are shared by everyone and count nothing. In the aggregate, the default layer and
+ * every value instance count once however many tenants refer to them, and the bytes saved by
+ * tenants sharing canonical values are reported separately.
+ */
+public final class HeapFootprint {
+  static final int HEADER = 12;
+  static final int ARRAY_HEADER = 16;
+  static final int REFERENCE = 4;
+
+  private static final int SUMMARY_TENANTS = 10;
+
+  private final int tenants;
+  private final long defaultBytes;
+  private final long structureBytes;
+  private final long valueBytes;
+  private final long unsharedValueBytes;
+  private final int canonicalValues;
+  private final List<Tenant> largest;
+
+  private HeapFootprint(int tenants, long defaultBytes, long structureBytes, long valueBytes, long unsharedValueBytes,
+                        int canonicalValues, List<Tenant> largest) {
+    this.tenants = tenants;
+    this.defaultBytes = defaultBytes;
+    this.structureBytes = structureBytes;
+    this.valueBytes = valueBytes;
+    this.unsharedValueBytes = unsharedValueBytes;
+    this.canonicalValues = canonicalValues;
+    this.largest = largest;
+  }
+
+  /**
+   * Estimated footprint of one tenant snapshot.
+   */
+  public static Tenant of(String tenantId, TenantConfigSnapshot snapshot) {
+    long valueBytes = 0;
+    for (ConfigSchema.FieldDescriptor descriptor : snapshot.getSchema().getFields()) {
+      if (!descriptor.getType().isPrimitive() && snapshot.isOverridden(descriptor.getOrdinal()))
+        valueBytes += sizeOf(snapshot.getObject(descriptor.getOrdinal()));
+    }
+    return new Tenant(tenantId, snapshot.getOverrideCount(), snapshot.estimateStructureBytes(), valueBytes);
+  }
+
+  /**
+   * Estimated footprint of a set of tenant snapshots, e.g. all cached ones.
+   */
+  public static HeapFootprint of(Map<String, TenantConfigSnapshot> snapshots) {
+    Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<Tenant> tenants = new ArrayList<>(snapshots.size());
+    long defaultBytes = 0;
+    long structureBytes = 0;
+    long valueBytes = 0;
+    long unsharedValueBytes = 0;
+    int canonicalValues = 0;
+
+    for (Map.Entry<String, TenantConfigSnapshot> entry : snapshots.entrySet()) {
+      TenantConfigSnapshot snapshot = entry.getValue();
+      if (seen.add(snapshot.getSchema())) {
+        defaultBytes += snapshot.estimateDefaultLayerBytes();
+        canonicalValues += snapshot.getCanonicalValueCount();
+      }
+
+      Tenant tenant = of(entry.getKey(), snapshot);
+      tenants.add(tenant);
+      structureBytes += tenant.getStructureBytes();
+      unsharedValueBytes += tenant.getValueBytes();
+
+      for (ConfigSchema.FieldDescriptor descriptor : snapshot.getSchema().getFields()) {
+        int ordinal = descriptor.getOrdinal();
+        if (!descriptor.getType().isPrimitive() && snapshot.isOverridden(ordinal)) {
+          Object value = snapshot.getObject(ordinal);
+          if (value != null && seen.add(value))
+            valueBytes += sizeOf(value);
+        }
+      }
+    }
+
+    tenants.sort(Comparator.comparingLong(Tenant::getTotalBytes).reversed());
+    return new HeapFootprint(tenants.size(), defaultBytes, structureBytes, valueBytes, unsharedValueBytes, canonicalValues,
+      Collections.unmodifiableList(new ArrayList<>(tenants.subList(0, Math.min(SUMMARY_TENANTS, tenants.size())))));
+  }
+
+  public int getTenants() {
+    return tenants;
+  }
+
+  /**
+   * Bytes of the default layers, shared by all tenants of a schema.
+   */
+  public long getDefaultBytes() {
+    return defaultBytes;
+  }
+
+  /**
+   * Bytes of the tenant snapshots without their override values.
+   */
+  public long getStructureBytes() {
+    return structureBytes;
+  }
+
+  /**
+   * Bytes of the distinct override values.
+   */
+  public long getValueBytes() {
+    return valueBytes;
+  }
+
+  /**
+   * Bytes the override values would take if no two tenants shared an instance.
+   */
+  public long getUnsharedValueBytes() {
+    return unsharedValueBytes;
+  }
+
+  public long getSharingSavings() {
+    return unsharedValueBytes - valueBytes;
+  }
+
+  public long getTotalBytes() {
+    return defaultBytes + structureBytes + valueBytes;
+  }
+
+  /**
+   * Number of canonical override values held by the interners of the default layers.
+   */
+  public int getCanonicalValues() {
+    return canonicalValues;
+  }
+
+  /**
+   * The tenants with the largest footprints, largest first.
+   */
+  public List<Tenant> getLargest() {
+    return largest;
+  }
+
+  /**
+   * The aggregate on the first line, followed by the largest tenants.
+   */
+  public String[] getSummary() {
+    String[] lines = new String[1 + largest.size()];
+    lines[0] = String.format("tenants=%d total=%d defaults=%d structure=%d values=%d unsharedValues=%d canonicalValues=%d",
+      tenants, getTotalBytes(), defaultBytes, structureBytes, valueBytes, unsharedValueBytes, canonicalValues);
+    for (int i = 0; i < largest.size(); i++)
+      lines[i + 1] = largest.get(i).toString();
+    return lines;
+  }
+
+  @Override
+  public String toString() {
+    return String.join("\n", getSummary());
+  }
+
+  static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  /**
+   * Size of an object with the given numbers of reference fields and bytes of primitive fields.
+   */
+  static long object(int references, int primitiveBytes) {
+    return align(HEADER + references * REFERENCE + primitiveBytes);
+  }
+
+  static long array(int length, int elementBytes) {
+    return align(ARRAY_HEADER + (long) length * elementBytes);
+  }
+
+  /**
+   * Estimated size of a snapshot value and of what it refers to. Lists and maps are assumed to be
+   * the unmodifiable copies made when values are frozen; unknown objects count as an empty object.
+   */
+  static long sizeOf(Object value) {
+    if (value == null || value instanceof Enum || value instanceof Boolean)
+      return 0;
+    if (value instanceof String)
+      return object(1, 4) + array(((String) value).length(), 2);
+    if (value instanceof Integer || value instanceof Float)
+      return object(0, 4);
+    if (value instanceof Long || value instanceof Double)
+      return object(0, 8);
+    if (value instanceof Duration)
+      return object(0, 12);
+    if (value instanceof OntologyFilter)
+      return ((OntologyFilter) value).estimateSize();
+    if (value instanceof SearchOrder)
+      return ((SearchOrder) value).estimateSize();
+    if (value instanceof SearchTypeWeights)
+      return ((SearchTypeWeights) value).estimateSize();
+
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      // unmodifiable view of an ArrayList
+      long size = object(2, 0) + object(1, 8) + array(list.size(), REFERENCE);
+      for (Object element : list)
+        size += sizeOf(element);
+      return size;
+    }
+
+    if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      // unmodifiable view of a LinkedHashMap, with one entry of hash, key, value, next, before and after per mapping
+      int table = Integer.highestOneBit((int) (map.size() / 0.75f + 1.0f) * 2 - 1);
+      long size = object(4, 0) + object(6, 17) + array(map.size() == 0 ? 0 : table, REFERENCE)
+        + map.size() * object(5, 4);
+      for (Map.Entry<?, ?> entry : map.entrySet())
+        size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+      return size;
+    }
+
+    return object(0, 0);
+  }
+
+  /**
+   * Estimated footprint of one tenant.
+   */
+  public static final class Tenant {
+    private final String tenantId;
+    private final int overrides;
+    private final long structureBytes;
+    private final long valueBytes;
+
+    private Tenant(String tenantId, int overrides, long structureBytes, long valueBytes) {
+      this.tenantId = tenantId;
+      this.overrides = overrides;
+      this.structureBytes = structureBytes;
+      this.valueBytes = valueBytes;
+    }
+
+    public String getTenantId() {
+      return tenantId;
+    }
+
+    public int getOverrides() {
+      return overrides;
+    }
+
+    /**
+     * Bytes of the snapshot without its override values; 0 for a tenant without overrides, which
+     * uses the snapshot of the default layer.
+     */
+    public long getStructureBytes() {
+      return structureBytes;
+    }
+
+    /**
+     * Bytes of the override values, including those shared with other tenants.
+     */
+    public long getValueBytes() {
+      return valueBytes;
+    }
+
+    public long getTotalBytes() {
+      return structureBytes + valueBytes;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s overrides=%d total=%d structure=%d values=%d",
+        tenantId, overrides, getTotalBytes(), structureBytes, valueBytes);
+    }
+  }
+}
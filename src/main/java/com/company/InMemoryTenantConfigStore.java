@@ -0,0 +1,63 @@
+package com.company;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tenant config store held in memory, for tests and local runs without a backing service.
+ */
+public class InMemoryTenantConfigStore implements TenantConfigStore {
+  private final ConcurrentMap<String, String> values = new ConcurrentHashMap<>();
+
+  @Override
+  public Optional<String> get(String tenantId, String key) {
+    return Optional.ofNullable(values.get(key(tenantId, key)));
+  }
+
+  @Override
+  public void put(String tenantId, String key, String value) {
+    values.put(key(tenantId, key), value);
+  }
+
+  @Override
+  public boolean compareAndSet(String tenantId, String key, String expected, String value) {
+    String storeKey = key(tenantId, key);
+    if (expected == null)
+      return values.putIfAbsent(storeKey, value) == null;
+
+    return values.replace(storeKey, expected, value);
+  }
+
+  @Override
+  public void remove(String tenantId, String key) {
+    values.remove(key(tenantId, key));
+  }
+
+  @Override
+  public Set<String> getTenantIds(String key) {
+    return tenantIds(values, key);
+  }
+
+  public void clear() {
+    values.clear();
+  }
+
+  static Set<String> tenantIds(Map<String, ?> values, String key) {
+    String suffix = '\u0000' + Objects.requireNonNull(key);
+    Set<String> tenantIds = new HashSet<>();
+    for (String storeKey : values.keySet()) {
+      if (storeKey.endsWith(suffix))
+        tenantIds.add(storeKey.substring(0, storeKey.length() - suffix.length()));
+    }
+    return tenantIds;
+  }
+
+  private static String key(String tenantId, String key) {
+    return Objects.requireNonNull(tenantId) + '\u0000' + Objects.requireNonNull(key);
+  }
+}
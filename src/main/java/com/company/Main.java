@@ -11,12 +11,19 @@ import org.apache.commons.configuration2.builder.fluent.Parameters;
 import org.apache.commons.configuration2.ex.ConfigurationException;
 
 import java.io.File;
+import java.io.IOException;
 
 @Slf4j
 public class Main {
 
   protected Configuration defaultConfig;
 
+  // the layers of configDef.xml, flattened once for repeated reads
+  protected CompiledConfiguration compiledConfig;
+
+  // reloaded when a layer changes, with -Dconfig.watch=true
+  protected WatchedConfiguration watchedConfig;
+
   public Main() {
     Configurations configs = new Configurations();
 
@@ -50,6 +57,24 @@ public class Main {
         log.info("Gamma {}", gamma);
       }
 
+      compiledConfig = CompiledConfiguration.compile(combinedConfig);
+      {
+        int alpha = compiledConfig.getInt("alpha");
+        String beta = compiledConfig.getString("beta");
+        String gamma = compiledConfig.getString("gamma");
+
+        log.info("Alpha {} from {}", alpha, compiledConfig.getLayer("alpha"));
+        log.info("Beta {} from {}", beta, compiledConfig.getLayer("beta"));
+        log.info("Gamma {} from {}", gamma, compiledConfig.getLayer("gamma"));
+      }
+
+      if (Boolean.getBoolean("config.watch")) {
+        watchedConfig = WatchedConfiguration.fromDefinition("configDef.xml", 500);
+        watchedConfig.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "config-watch-close"));
+        log.info("Watching the layers of configDef.xml, alpha is {}", watchedConfig.get().getInt("alpha"));
+      }
+
       Parameters params = new Parameters();
       FileBasedConfigurationBuilder<FileBasedConfiguration> builder =
         new FileBasedConfigurationBuilder<FileBasedConfiguration>(PropertiesConfiguration.class)
@@ -66,6 +91,22 @@ public class Main {
       }
     } catch (ConfigurationException cex) {
       // Something went wrong
+    } catch (IOException e) {
+      log.error("Failed to watch configuration files for reason: {}", e);
+    }
+  }
+
+  /**
+   * Stops watching the configuration files.
+   */
+  public void close() {
+    if (watchedConfig == null)
+      return;
+
+    try {
+      watchedConfig.close();
+    } catch (IOException e) {
+      log.error("Failed to stop watching configuration files for reason: {}", e);
     }
   }
 
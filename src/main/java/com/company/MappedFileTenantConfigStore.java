@@ -0,0 +1,324 @@
+package com.company;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Tenant config store kept in a local file, for tests, load tests and as a persistent cache on
+ * nodes that must start without the remote store.
+ * <p>
+ * The file is an append-only log of (tenantId, key, value) records, memory-mapped and indexed in
+ * memory by the offset of the latest record per key. Reads are lock-free; writes are serialized.
+ * Each record carries a CRC32, and a torn record at the end of the log is dropped on open. Once the
+ * log is mostly superseded records it is compacted into a new file that replaces the old one.
+ * <p>
+ * Record layout: body length, CRC32 of the body, then the body: tenantId, key and value, each as
+ * a length-prefixed UTF-8 string. A value length of -1 marks a removed key.
+ */
+public class MappedFileTenantConfigStore implements TenantConfigStore, Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(MappedFileTenantConfigStore.class);
+
+  private static final int MAGIC = 0x54434647;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+  private static final int RECORD_HEADER_SIZE = 8;
+  private static final int TOMBSTONE = -1;
+  private static final int INITIAL_CAPACITY = 1 << 20;
+  private static final int MIN_COMPACTION_SIZE = 4 << 20;
+
+  private final Path path;
+  private final Object writeLock = new Object();
+  private volatile Segment segment;
+
+  public MappedFileTenantConfigStore(Path path) throws IOException {
+    this.path = path;
+    this.segment = Segment.open(path);
+  }
+
+  @Override
+  public Optional<String> get(String tenantId, String key) {
+    Segment current = openSegment();
+    Integer offset = current.index.get(storeKey(tenantId, key));
+    if (offset == null)
+      return Optional.empty();
+
+    return Optional.of(current.readValue(offset));
+  }
+
+  @Override
+  public void put(String tenantId, String key, String value) throws IOException {
+    Objects.requireNonNull(value);
+    synchronized (writeLock) {
+      append(tenantId, key, value);
+    }
+  }
+
+  @Override
+  public boolean compareAndSet(String tenantId, String key, String expected, String value) throws IOException {
+    Objects.requireNonNull(value);
+    synchronized (writeLock) {
+      if (!Objects.equals(expected, get(tenantId, key).orElse(null)))
+        return false;
+
+      append(tenantId, key, value);
+      return true;
+    }
+  }
+
+  @Override
+  public void remove(String tenantId, String key) throws IOException {
+    synchronized (writeLock) {
+      if (openSegment().index.containsKey(storeKey(tenantId, key)))
+        append(tenantId, key, null);
+    }
+  }
+
+  @Override
+  public Set<String> getTenantIds(String key) {
+    return InMemoryTenantConfigStore.tenantIds(openSegment().index, key);
+  }
+
+  /**
+   * Number of keys with a value.
+   */
+  public int size() {
+    return openSegment().index.size();
+  }
+
+  /**
+   * Rewrites the log with only the latest record per key and replaces the file with it.
+   */
+  public void compact() throws IOException {
+    synchronized (writeLock) {
+      Segment old = openSegment();
+      Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+      Files.deleteIfExists(compacted);
+
+      Segment fresh = Segment.open(compacted);
+      for (Map.Entry<String, Integer> entry : old.index.entrySet())
+        fresh.copyRecord(entry.getKey(), old, entry.getValue());
+      fresh.buffer.force();
+
+      Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      segment = fresh;
+      // readers still holding the old segment keep reading its mapping, which outlives the channel
+      old.channel.close();
+      logger.info("Compacted {} from {} to {} bytes", path, old.position, fresh.position);
+    }
+  }
+
+  /**
+   * Forces written records to the storage device.
+   */
+  public void flush() {
+    openSegment().buffer.force();
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (writeLock) {
+      Segment current = segment;
+      if (current == null)
+        return;
+
+      segment = null;
+      current.buffer.force();
+      current.channel.close();
+    }
+  }
+
+  private void append(String tenantId, String key, String value) throws IOException {
+    Segment current = openSegment();
+    current.append(storeKey(tenantId, key), tenantId, key, value);
+
+    long garbage = current.position - HEADER_SIZE - current.liveBytes;
+    if (current.position >= MIN_COMPACTION_SIZE && garbage > current.liveBytes)
+      compact();
+  }
+
+  private Segment openSegment() {
+    Segment current = segment;
+    if (current == null)
+      throw new IllegalStateException("Tenant config store " + path + " is closed");
+    return current;
+  }
+
+  private static String storeKey(String tenantId, String key) {
+    return Objects.requireNonNull(tenantId) + '\u0000' + Objects.requireNonNull(key);
+  }
+
+  /**
+   * One log file with its mapping and index. Fields other than the buffer and index are only used
+   * under the store's write lock.
+   */
+  private static final class Segment {
+    final FileChannel channel;
+    final ConcurrentHashMap<String, Integer> index = new ConcurrentHashMap<>();
+    volatile MappedByteBuffer buffer;
+    int position;
+    long liveBytes;
+
+    private Segment(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    static Segment open(Path path) throws IOException {
+      FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+      try {
+        Segment segment = new Segment(channel);
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE)
+          throw new IOException("Tenant config store " + path + " is too large");
+
+        segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_CAPACITY));
+        if (size == 0) {
+          segment.buffer.putInt(0, MAGIC);
+          segment.buffer.putInt(4, FORMAT_VERSION);
+        } else if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != FORMAT_VERSION) {
+          throw new IOException(path + " is not a tenant config store");
+        }
+
+        segment.recover(path);
+        return segment;
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    /**
+     * Rebuilds the index from the log, stopping at the first record that is incomplete or fails its
+     * checksum; everything after it is cleared so later appends cannot be mistaken for it.
+     */
+    private void recover(Path path) {
+      ByteBuffer view = buffer.duplicate();
+      int offset = HEADER_SIZE;
+      while (offset + RECORD_HEADER_SIZE <= view.capacity()) {
+        int bodyLength = view.getInt(offset);
+        if (bodyLength == 0)
+          break;
+
+        if (bodyLength < 0 || bodyLength > view.capacity() - offset - RECORD_HEADER_SIZE
+          || view.getInt(offset + 4) != checksum(view, offset + RECORD_HEADER_SIZE, bodyLength)) {
+          logger.warn("Dropping damaged tail of {} at offset {}", path, offset);
+          for (int i = offset; i < view.capacity(); i++)
+            view.put(i, (byte) 0);
+          break;
+        }
+
+        int keyOffset = offset + RECORD_HEADER_SIZE;
+        String tenantId = readString(view, keyOffset);
+        keyOffset += 4 + view.getInt(keyOffset);
+        String key = readString(view, keyOffset);
+        keyOffset += 4 + view.getInt(keyOffset);
+
+        index(storeKey(tenantId, key), offset, view.getInt(keyOffset) == TOMBSTONE);
+        offset += RECORD_HEADER_SIZE + bodyLength;
+      }
+      position = offset;
+    }
+
+    String readValue(int offset) {
+      ByteBuffer view = buffer.duplicate();
+      int valueOffset = offset + RECORD_HEADER_SIZE;
+      valueOffset += 4 + view.getInt(valueOffset);
+      valueOffset += 4 + view.getInt(valueOffset);
+      return readString(view, valueOffset);
+    }
+
+    void append(String storeKey, String tenantId, String key, String value) throws IOException {
+      byte[] tenantBytes = tenantId.getBytes(StandardCharsets.UTF_8);
+      byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+      byte[] valueBytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+      int bodyLength = 12 + tenantBytes.length + keyBytes.length + valueBytes.length;
+
+      ByteBuffer view = reserve(RECORD_HEADER_SIZE + bodyLength);
+      view.position(position + RECORD_HEADER_SIZE);
+      view.putInt(tenantBytes.length).put(tenantBytes);
+      view.putInt(keyBytes.length).put(keyBytes);
+      view.putInt(value == null ? TOMBSTONE : valueBytes.length).put(valueBytes);
+      commit(view, storeKey, bodyLength, value == null);
+    }
+
+    void copyRecord(String storeKey, Segment source, int offset) throws IOException {
+      ByteBuffer sourceView = source.buffer.duplicate();
+      int bodyLength = sourceView.getInt(offset);
+      sourceView.limit(offset + RECORD_HEADER_SIZE + bodyLength).position(offset + RECORD_HEADER_SIZE);
+
+      ByteBuffer view = reserve(RECORD_HEADER_SIZE + bodyLength);
+      view.position(position + RECORD_HEADER_SIZE);
+      view.put(sourceView);
+      commit(view, storeKey, bodyLength, false);
+    }
+
+    /**
+     * Writes the record header after the body, so a record only becomes readable on recovery once
+     * it is complete, then publishes it in the index.
+     */
+    private void commit(ByteBuffer view, String storeKey, int bodyLength, boolean removed) {
+      int offset = position;
+      view.putInt(offset + 4, checksum(view, offset + RECORD_HEADER_SIZE, bodyLength));
+      view.putInt(offset, bodyLength);
+      position += RECORD_HEADER_SIZE + bodyLength;
+      index(storeKey, offset, removed);
+    }
+
+    private void index(String storeKey, int offset, boolean removed) {
+      Integer previous = removed ? index.remove(storeKey) : index.put(storeKey, offset);
+      if (previous != null)
+        liveBytes -= RECORD_HEADER_SIZE + buffer.getInt(previous);
+      if (!removed)
+        liveBytes += RECORD_HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    /**
+     * Grows the mapping if needed so that length bytes fit at the current position.
+     */
+    private ByteBuffer reserve(int length) throws IOException {
+      long required = (long) position + length;
+      if (required > Integer.MAX_VALUE)
+        throw new IOException("Tenant config store is full");
+
+      if (required > buffer.capacity()) {
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+      }
+      return buffer.duplicate();
+    }
+
+    private static int checksum(ByteBuffer view, int offset, int length) {
+      ByteBuffer body = view.duplicate();
+      body.limit(offset + length).position(offset);
+      CRC32 crc = new CRC32();
+      crc.update(body);
+      return (int) crc.getValue();
+    }
+
+    private static String readString(ByteBuffer view, int offset) {
+      int length = view.getInt(offset);
+      byte[] bytes = new byte[length];
+      ByteBuffer source = view.duplicate();
+      source.position(offset + 4);
+      source.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
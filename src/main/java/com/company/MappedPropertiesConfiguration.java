@@ -0,0 +1,501 @@
+package com.company;
+
+import org.apache.commons.configuration2.AbstractConfiguration;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.builder.BasicConfigurationBuilder;
+import org.apache.commons.configuration2.builder.FileBasedBuilderParametersImpl;
+import org.apache.commons.configuration2.builder.combined.BaseConfigurationBuilderProvider;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.io.FileLocatorUtils;
+import org.apache.commons.text.StringEscapeUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Read-only properties layer for very large files, e.g. generated override layers with hundreds of
+ * thousands of keys. The file is memory-mapped, cut into chunks at line boundaries and the chunks
+ * are parsed in parallel on a fork-join pool. Keys and values are kept in two arrays in file order
+ * with an open-addressing index, instead of the node model of a PropertiesConfiguration.
+ * <p>
+ * The syntax is that of {@link org.apache.commons.configuration2.PropertiesConfiguration}, read as
+ * ISO-8859-1: lines are trimmed, blank lines and lines starting with # or ! are comments, a line
+ * ending in an odd number of backslashes continues on the next non-comment line, a key ends at an
+ * unescaped =, : or whitespace, and a repeated key has a list of values. Include directives are not
+ * supported and fail the load, and the layer can be neither saved nor reloaded by commons. It is
+ * meant for large generated layers only; ordinary layers should stay properties layers. The file
+ * has to be a plain file, not a resource inside a jar.
+ * <p>
+ * In configDef.xml, register {@link Provider} in the header and declare a layer with its tag:
+ * <pre>
+ * &lt;header&gt;
+ *   &lt;providers&gt;
+ *     &lt;provider config-tag="mappedProperties" config-class="com.company.MappedPropertiesConfiguration$Provider"/&gt;
+ *   &lt;/providers&gt;
+ * &lt;/header&gt;
+ * &lt;mappedProperties fileName="generated.properties" config-name="generated"/&gt;
+ * </pre>
+ */
+public class MappedPropertiesConfiguration extends AbstractConfiguration {
+  public static final String TAG = "mappedProperties";
+
+  // smaller files are parsed by a single task
+  private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+  private final String[] keys;
+  // String, or List<String> for a repeated key
+  private final Object[] values;
+  // 1 + position in keys, 0 for a free slot
+  private final int[] index;
+  private final int size;
+
+  /**
+   * An empty configuration.
+   */
+  public MappedPropertiesConfiguration() {
+    this(new String[0], new Object[0], new int[1], 0);
+  }
+
+  private MappedPropertiesConfiguration(String[] keys, Object[] values, int[] index, int size) {
+    this.keys = keys;
+    this.values = values;
+    this.index = index;
+    this.size = size;
+  }
+
+  public static MappedPropertiesConfiguration load(Path path) throws IOException {
+    return load(path, ForkJoinPool.commonPool());
+  }
+
+  public static MappedPropertiesConfiguration load(Path path, ForkJoinPool pool) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE)
+        throw new IOException(path + " is larger than 2 GB");
+      if (length == 0)
+        return new MappedPropertiesConfiguration();
+
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      List<ChunkTask> tasks = split(buffer, Math.max(1, pool.getParallelism() * 4));
+      try {
+        pool.invoke(new RecursiveTask<Void>() {
+          @Override
+          protected Void compute() {
+            ForkJoinTask.invokeAll(tasks);
+            return null;
+          }
+        });
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Failed to parse " + path + ": " + e.getMessage(), e);
+      }
+
+      Chunk[] chunks = new Chunk[tasks.size()];
+      for (int i = 0; i < chunks.length; i++)
+        chunks[i] = tasks.get(i).join();
+      return merge(chunks);
+    }
+  }
+
+  /**
+   * Cuts the buffer into at most maxChunks chunks of at least MIN_CHUNK_SIZE bytes, each starting
+   * at the start of a property.
+   */
+  private static List<ChunkTask> split(ByteBuffer buffer, int maxChunks) {
+    int length = buffer.limit();
+    int chunkSize = Math.max(MIN_CHUNK_SIZE, (int) ((length + (long) maxChunks - 1) / maxChunks));
+
+    List<ChunkTask> tasks = new ArrayList<>();
+    int start = 0;
+    while (start < length) {
+      int end = length - start <= chunkSize ? length : nextPropertyStart(buffer, start + chunkSize);
+      tasks.add(new ChunkTask(buffer, start, end));
+      start = end;
+    }
+    return tasks;
+  }
+
+  /**
+   * Returns the position after the first line feed at or after from that ends a property, or the
+   * end of the buffer. A line feed ends a property when its line is neither a comment nor continued
+   * on the next line; a comment line does not end a property, as a continued property skips it.
+   */
+  static int nextPropertyStart(ByteBuffer buffer, int from) {
+    int length = buffer.limit();
+    for (int i = from; i < length; i++) {
+      if (buffer.get(i) == '\n' && endsProperty(buffer, i))
+        return i + 1;
+    }
+    return length;
+  }
+
+  private static boolean endsProperty(ByteBuffer buffer, int lineFeed) {
+    int start = lineFeed;
+    while (start > 0 && buffer.get(start - 1) != '\n' && (buffer.get(start - 1) != '\r' || start == lineFeed))
+      start--;
+    int end = lineFeed;
+    while (end > start && (buffer.get(end - 1) & 0xff) <= ' ')
+      end--;
+    while (start < end && (buffer.get(start) & 0xff) <= ' ')
+      start++;
+    if (start == end || buffer.get(start) == '#' || buffer.get(start) == '!')
+      return false;
+
+    int backslashes = 0;
+    while (end > start && buffer.get(end - 1) == '\\') {
+      backslashes++;
+      end--;
+    }
+    return (backslashes & 1) == 0;
+  }
+
+  private static MappedPropertiesConfiguration merge(Chunk[] chunks) {
+    int count = 0;
+    for (Chunk chunk : chunks)
+      count += chunk.size;
+
+    int capacity = Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+    int[] index = new int[capacity];
+    String[] keys = new String[count];
+    Object[] values = new Object[count];
+    int size = 0;
+
+    for (Chunk chunk : chunks) {
+      for (int i = 0; i < chunk.size; i++) {
+        String key = chunk.keys[i];
+        int slot = slot(index, keys, key);
+        if (index[slot] == 0) {
+          keys[size] = key;
+          values[size] = chunk.values[i];
+          index[slot] = ++size;
+        } else {
+          values[index[slot] - 1] = addValue(values[index[slot] - 1], chunk.values[i]);
+        }
+      }
+    }
+
+    return new MappedPropertiesConfiguration(Arrays.copyOf(keys, size), Arrays.copyOf(values, size), index, size);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object addValue(Object previous, String value) {
+    List<String> list;
+    if (previous instanceof String) {
+      list = new ArrayList<>(2);
+      list.add((String) previous);
+    } else {
+      list = (List<String>) previous;
+    }
+    list.add(value);
+    return list;
+  }
+
+  /**
+   * Returns the slot of a key in the index, or the free slot where it belongs.
+   */
+  private static int slot(int[] index, String[] keys, String key) {
+    int mask = index.length - 1;
+    int h = key.hashCode();
+    int slot = (h ^ (h >>> 16)) & mask;
+    while (index[slot] != 0 && !keys[index[slot] - 1].equals(key))
+      slot = (slot + 1) & mask;
+    return slot;
+  }
+
+  private int position(String key) {
+    if (key == null)
+      return -1;
+    return index[slot(index, keys, key)] - 1;
+  }
+
+  @Override
+  protected Object getPropertyInternal(String key) {
+    int position = position(key);
+    if (position < 0)
+      return null;
+    Object value = values[position];
+    return value instanceof String ? value : Collections.unmodifiableList((List<?>) value);
+  }
+
+  @Override
+  protected boolean containsKeyInternal(String key) {
+    return position(key) >= 0;
+  }
+
+  @Override
+  protected Iterator<String> getKeysInternal() {
+    return new Iterator<String>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public String next() {
+        if (next >= size)
+          throw new NoSuchElementException();
+        return keys[next++];
+      }
+    };
+  }
+
+  @Override
+  protected boolean isEmptyInternal() {
+    return size == 0;
+  }
+
+  @Override
+  protected int sizeInternal() {
+    return size;
+  }
+
+  @Override
+  protected void addPropertyDirect(String key, Object value) {
+    throw new UnsupportedOperationException("MappedPropertiesConfiguration is read-only");
+  }
+
+  @Override
+  protected void clearPropertyDirect(String key) {
+    throw new UnsupportedOperationException("MappedPropertiesConfiguration is read-only");
+  }
+
+  private static final class Chunk {
+    String[] keys = new String[64];
+    String[] values = new String[64];
+    int size;
+
+    void add(String key, String value) {
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      keys[size] = key;
+      values[size] = value;
+      size++;
+    }
+  }
+
+  /**
+   * Parses the properties of [start, end) in file order. Throws IllegalArgumentException for a
+   * malformed unicode escape or an include directive.
+   */
+  private static final class ChunkTask extends RecursiveTask<Chunk> {
+    private static final long serialVersionUID = 1L;
+
+    private final ByteBuffer buffer;
+    private final int start;
+    private final int end;
+
+    ChunkTask(ByteBuffer buffer, int start, int end) {
+      this.buffer = buffer;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected Chunk compute() {
+      Chunk chunk = new Chunk();
+      StringBuilder property = new StringBuilder();
+      StringBuilder text = new StringBuilder();
+
+      int position = start;
+      while (position < end) {
+        int lineEnd = position;
+        while (lineEnd < end && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r')
+          lineEnd++;
+        int next = lineEnd + 1;
+        if (next < end && buffer.get(lineEnd) == '\r' && buffer.get(next) == '\n')
+          next++;
+
+        int from = position;
+        int to = lineEnd;
+        position = next;
+        while (from < to && (buffer.get(from) & 0xff) <= ' ')
+          from++;
+        while (to > from && (buffer.get(to - 1) & 0xff) <= ' ')
+          to--;
+        if (from == to || buffer.get(from) == '#' || buffer.get(from) == '!')
+          continue;
+
+        int backslashes = 0;
+        while (backslashes < to - from && buffer.get(to - 1 - backslashes) == '\\')
+          backslashes++;
+        boolean continued = (backslashes & 1) == 1;
+        for (int i = from; i < (continued ? to - 1 : to); i++)
+          property.append((char) (buffer.get(i) & 0xff));
+
+        if (!continued) {
+          parseProperty(property, text, chunk);
+          property.setLength(0);
+        }
+      }
+      // like PropertiesConfiguration, a property continued at the end of the file is dropped
+      return chunk;
+    }
+
+    /**
+     * Splits a property into key and value like PropertiesReader: the key is a run of escaped or
+     * non-whitespace characters up to a separator, which is an = or : or whitespace, optionally
+     * surrounded by whitespace.
+     */
+    private static void parseProperty(CharSequence property, StringBuilder text, Chunk chunk) {
+      int length = property.length();
+      int keyEnd = 0;
+      while (keyEnd < length) {
+        char c = property.charAt(keyEnd);
+        if (c == '\\' && keyEnd + 1 < length)
+          keyEnd += 2;
+        else if (c == '\\' || c == '=' || c == ':' || isWhitespace(c))
+          break;
+        else
+          keyEnd++;
+      }
+
+      int valueStart = keyEnd;
+      while (valueStart < length && isWhitespace(property.charAt(valueStart)))
+        valueStart++;
+      if (valueStart < length && (property.charAt(valueStart) == '=' || property.charAt(valueStart) == ':')) {
+        valueStart++;
+        while (valueStart < length && isWhitespace(property.charAt(valueStart)))
+          valueStart++;
+      }
+
+      // the key is trimmed before it is unescaped, so a trailing escaped space is dropped
+      int keyTrimmed = keyEnd;
+      while (keyTrimmed > 0 && property.charAt(keyTrimmed - 1) <= ' ')
+        keyTrimmed--;
+      String key = property.subSequence(0, keyTrimmed).toString();
+      if (key.indexOf('\\') >= 0)
+        key = StringEscapeUtils.unescapeJava(key);
+      if (key.equals(PropertiesConfiguration.getInclude()))
+        throw new IllegalArgumentException("Include directives are not supported: " + property);
+      String value = unescapeValue(property, valueStart, length, text);
+      chunk.add(key, value);
+    }
+
+    // \s of java.util.regex, as used by PropertiesReader
+    private static boolean isWhitespace(char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\u000b' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Unescapes a value like PropertiesConfiguration: \\t, \\n, \\r, \\f, \\b and \\uxxxx are
+     * translated, a backslash before one of :#=!\\'" is dropped and any other backslash is kept.
+     */
+    private static String unescapeValue(CharSequence s, int from, int to, StringBuilder text) {
+      int i = from;
+      while (i < to && s.charAt(i) != '\\')
+        i++;
+      if (i == to)
+        return s.subSequence(from, to).toString();
+
+      text.setLength(0);
+      text.append(s, from, i);
+      while (i < to) {
+        char c = s.charAt(i++);
+        if (c != '\\') {
+          text.append(c);
+          continue;
+        }
+        if (i == to) {
+          text.append('\\');
+          break;
+        }
+
+        c = s.charAt(i++);
+        switch (c) {
+          case 't':
+            text.append('\t');
+            break;
+          case 'n':
+            text.append('\n');
+            break;
+          case 'r':
+            text.append('\r');
+            break;
+          case 'f':
+            text.append('\f');
+            break;
+          case 'b':
+            text.append('\b');
+            break;
+          case 'u':
+            // an incomplete escape at the end is dropped
+            if (to - i >= 4) {
+              try {
+                text.append((char) Integer.parseInt(s.subSequence(i, i + 4).toString(), 16));
+              } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Unable to parse unicode value: " + s.subSequence(i, i + 4));
+              }
+            }
+            i += 4;
+            break;
+          case ':':
+          case '#':
+          case '=':
+          case '!':
+          case '\\':
+          case '\'':
+          case '"':
+            text.append(c);
+            break;
+          default:
+            text.append('\\').append(c);
+        }
+      }
+      return text.toString();
+    }
+  }
+
+  /**
+   * Builder for the mappedProperties tag of configDef.xml: loads the file of the file based
+   * parameters of the declaration.
+   */
+  public static class Builder extends BasicConfigurationBuilder<MappedPropertiesConfiguration> {
+    public Builder(Class<? extends MappedPropertiesConfiguration> resultClass, Map<String, Object> params, boolean allowFailOnInit) {
+      super(resultClass, params, allowFailOnInit);
+    }
+
+    @Override
+    protected MappedPropertiesConfiguration createResultInstance() throws ConfigurationException {
+      FileBasedBuilderParametersImpl fileParameters = FileBasedBuilderParametersImpl.fromParameters(getParameters(), true);
+      URL url = FileLocatorUtils.locate(fileParameters.getFileHandler().getFileLocator());
+      if (url == null)
+        throw new ConfigurationException("Cannot locate " + fileParameters.getFileHandler().getFileName());
+
+      // e.g. a resource inside a jar, which cannot be mapped
+      File file = FileLocatorUtils.fileFromURL(url);
+      if (file == null)
+        throw new ConfigurationException(url + " is not a file and cannot be mapped; declare it as a properties layer");
+
+      try {
+        return load(file.toPath());
+      } catch (IOException e) {
+        throw new ConfigurationException("Failed to load " + url, e);
+      }
+    }
+  }
+
+  public static class Provider extends BaseConfigurationBuilderProvider {
+    public Provider() {
+      super(Builder.class.getName(), null, MappedPropertiesConfiguration.class.getName(),
+        Collections.singletonList(FileBasedBuilderParametersImpl.class.getName()));
+    }
+  }
+}
@@ -0,0 +1,85 @@
+package com.company;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Immutable ontology filter value. Keeps the configured order as a list and precomputes an
+ * EnumSet and a bit mask, so membership checks are constant time and do not allocate.
+ */
+public final class OntologyFilter extends AbstractList<SystemConfig.SystemConfigMapper.Ontology> implements RandomAccess {
+  private static final SystemConfig.SystemConfigMapper.Ontology[] ONTOLOGIES = SystemConfig.SystemConfigMapper.Ontology.values();
+
+  private final byte[] ordinals;
+  private final Set<SystemConfig.SystemConfigMapper.Ontology> set;
+  private final long mask;
+
+  private OntologyFilter(byte[] ordinals, EnumSet<SystemConfig.SystemConfigMapper.Ontology> set, long mask) {
+    this.ordinals = ordinals;
+    this.set = Collections.unmodifiableSet(set);
+    this.mask = mask;
+  }
+
+  public static OntologyFilter of(Collection<SystemConfig.SystemConfigMapper.Ontology> ontologies) {
+    if (ontologies instanceof OntologyFilter)
+      return (OntologyFilter) ontologies;
+
+    byte[] ordinals = new byte[ontologies.size()];
+    EnumSet<SystemConfig.SystemConfigMapper.Ontology> set = EnumSet.noneOf(SystemConfig.SystemConfigMapper.Ontology.class);
+    long mask = 0;
+    int i = 0;
+
+    for (SystemConfig.SystemConfigMapper.Ontology ontology : ontologies) {
+      ordinals[i++] = (byte) ontology.ordinal();
+      set.add(ontology);
+      mask |= 1L << ontology.ordinal();
+    }
+    return new OntologyFilter(ordinals, set, mask);
+  }
+
+  @Override
+  public SystemConfig.SystemConfigMapper.Ontology get(int index) {
+    return ONTOLOGIES[ordinals[index]];
+  }
+
+  @Override
+  public int size() {
+    return ordinals.length;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof SystemConfig.SystemConfigMapper.Ontology && matches((SystemConfig.SystemConfigMapper.Ontology) o);
+  }
+
+  public boolean matches(SystemConfig.SystemConfigMapper.Ontology ontology) {
+    return (mask & (1L << ontology.ordinal())) != 0;
+  }
+
+  /**
+   * The filtered ontologies as an unmodifiable view of an EnumSet.
+   */
+  public Set<SystemConfig.SystemConfigMapper.Ontology> asSet() {
+    return set;
+  }
+
+  /**
+   * The filtered ontologies as a bit mask with bit {@code 1L << ontology.ordinal()} set for each of them.
+   */
+  public long getMask() {
+    return mask;
+  }
+
+  /**
+   * Estimated heap size, see {@link HeapFootprint}: this object, its ordinals, and the
+   * unmodifiable view of its EnumSet.
+   */
+  long estimateSize() {
+    return HeapFootprint.object(2, 8) + HeapFootprint.array(ordinals.length, 1) + HeapFootprint.object(1, 0)
+      + HeapFootprint.object(2, 8);
+  }
+}
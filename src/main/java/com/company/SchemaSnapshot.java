@@ -0,0 +1,133 @@
+package com.company;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Precompiled form of the system configuration: the config tree encoded as Smile together with the
+ * fingerprint of its compiled schema. The build validates /config/SystemConfiguration.json and
+ * writes the snapshot next to it (see the compileConfigSchema task), which saves reading and
+ * parsing the JSON text at startup. The build rewrites the snapshot whenever the JSON changes; the
+ * fingerprint stored in it only guards against a corrupt snapshot, not against a stale one.
+ */
+public class SchemaSnapshot {
+  public static final String RESOURCE = "/config/SystemConfiguration.snapshot";
+
+  private static final ObjectMapper jsonMapper = new ObjectMapper();
+  private static final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+  @JsonProperty("fingerprint")
+  private String fingerprint;
+
+  @JsonProperty("groups")
+  private List<SystemConfig.SystemConfigMapper> groups;
+
+  /**
+   * Validates a system configuration given as JSON and writes its snapshot.
+   * <p>
+   * Arguments: JSON source path, snapshot target path.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("Usage: SchemaSnapshot <SystemConfiguration.json> <snapshot>");
+      System.exit(2);
+    }
+
+    List<SystemConfig.SystemConfigMapper> config = parseJson(new String(Files.readAllBytes(Paths.get(args[0])), "UTF-8"));
+    List<String> problems = validate(config);
+    if (!problems.isEmpty()) {
+      problems.forEach(problem -> System.err.println(args[0] + ": " + problem));
+      System.exit(1);
+    }
+
+    Path target = Paths.get(args[1]);
+    if (target.getParent() != null)
+      Files.createDirectories(target.getParent());
+    Files.write(target, encode(config));
+  }
+
+  public static List<SystemConfig.SystemConfigMapper> parseJson(String json) throws IOException {
+    return Arrays.asList(jsonMapper.readValue(json, SystemConfig.SystemConfigMapper[].class));
+  }
+
+  /**
+   * Returns what is wrong with a system configuration: fields without a name or of an unsupported
+   * type, and fields defined more than once.
+   */
+  public static List<String> validate(List<SystemConfig.SystemConfigMapper> config) {
+    List<String> problems = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (SystemConfig.SystemConfigMapper group : config) {
+      if (group.getFields() == null)
+        continue;
+
+      for (SystemConfig.SystemConfigMapper.SingleField field : group.getFields()) {
+        if (StringUtils.isBlank(field.getField()))
+          problems.add("field without a name of type " + field.getClass().getSimpleName());
+        else if (!names.add(field.getField()))
+          problems.add("field " + field.getField() + " is defined more than once");
+
+        if (ConfigSchema.FieldKind.of(field) == null)
+          problems.add("field " + field.getField() + " has unsupported type " + field.getClass().getSimpleName());
+      }
+    }
+    return problems;
+  }
+
+  public static byte[] encode(List<SystemConfig.SystemConfigMapper> config) throws IOException {
+    SchemaSnapshot snapshot = new SchemaSnapshot();
+    snapshot.fingerprint = ConfigSchema.compile(config).getFingerprint();
+    snapshot.groups = config;
+    return smileMapper.writeValueAsBytes(snapshot);
+  }
+
+  /**
+   * Decodes a snapshot into a new config tree.
+   */
+  public static List<SystemConfig.SystemConfigMapper> decode(byte[] bytes) throws IOException {
+    return smileMapper.readValue(bytes, SchemaSnapshot.class).groups;
+  }
+
+  /**
+   * Decodes a snapshot and checks that it compiles to the schema it was written for, which catches
+   * a corrupt or truncated snapshot. It cannot tell whether the snapshot is older than the JSON.
+   */
+  public static List<SystemConfig.SystemConfigMapper> decodeVerified(byte[] bytes) throws IOException {
+    SchemaSnapshot snapshot = smileMapper.readValue(bytes, SchemaSnapshot.class);
+    String fingerprint = ConfigSchema.compile(snapshot.groups).getFingerprint();
+    if (!fingerprint.equals(snapshot.fingerprint))
+      throw new IOException("Schema snapshot was written for schema " + snapshot.fingerprint + " but has schema " + fingerprint);
+
+    return snapshot.groups;
+  }
+
+  /**
+   * Reads the snapshot from the classpath, or returns null if the build did not produce one.
+   */
+  public static byte[] readResource() throws IOException {
+    try (InputStream in = SchemaSnapshot.class.getResourceAsStream(RESOURCE)) {
+      if (in == null)
+        return null;
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+      byte[] buffer = new byte[8192];
+      for (int read; (read = in.read(buffer)) > 0; )
+        out.write(buffer, 0, read);
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.company;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Immutable search order value. Stores the search types as ordinals and precomputes the rank of
+ * every search type, so ranking a search type is a single array load.
+ */
+public final class SearchOrder extends AbstractList<SystemConfig.SystemConfigMapper.SearchType> implements RandomAccess {
+  private static final SystemConfig.SystemConfigMapper.SearchType[] SEARCH_TYPES = SystemConfig.SystemConfigMapper.SearchType.values();
+
+  private final byte[] ordinals;
+
+  // rank by search type ordinal, -1 for search types that are not part of the order
+  private final int[] ranks;
+
+  private SearchOrder(byte[] ordinals, int[] ranks) {
+    this.ordinals = ordinals;
+    this.ranks = ranks;
+  }
+
+  public static SearchOrder of(Collection<SystemConfig.SystemConfigMapper.SearchType> searchTypes) {
+    if (searchTypes instanceof SearchOrder)
+      return (SearchOrder) searchTypes;
+
+    byte[] ordinals = new byte[searchTypes.size()];
+    int[] ranks = new int[SEARCH_TYPES.length];
+    Arrays.fill(ranks, -1);
+    int i = 0;
+
+    for (SystemConfig.SystemConfigMapper.SearchType searchType : searchTypes) {
+      ordinals[i] = (byte) searchType.ordinal();
+
+      // a search type listed twice ranks by its first position
+      if (ranks[searchType.ordinal()] < 0)
+        ranks[searchType.ordinal()] = i;
+      i++;
+    }
+    return new SearchOrder(ordinals, ranks);
+  }
+
+  @Override
+  public SystemConfig.SystemConfigMapper.SearchType get(int index) {
+    return SEARCH_TYPES[ordinals[index]];
+  }
+
+  @Override
+  public int size() {
+    return ordinals.length;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof SystemConfig.SystemConfigMapper.SearchType && rank((SystemConfig.SystemConfigMapper.SearchType) o) >= 0;
+  }
+
+  /**
+   * Returns the search type ordinal at a position of the order.
+   */
+  public int ordinalAt(int index) {
+    return ordinals[index];
+  }
+
+  /**
+   * Returns the position of a search type in the order, or -1 if it is not part of it.
+   */
+  public int rank(SystemConfig.SystemConfigMapper.SearchType searchType) {
+    return ranks[searchType.ordinal()];
+  }
+
+  public int rank(int searchTypeOrdinal) {
+    return ranks[searchTypeOrdinal];
+  }
+
+  /**
+   * Estimated heap size, see {@link HeapFootprint}: this object, its ordinals and its ranks.
+   */
+  long estimateSize() {
+    return HeapFootprint.object(2, 0) + HeapFootprint.array(ordinals.length, 1) + HeapFootprint.array(ranks.length, 4);
+  }
+}
@@ -0,0 +1,148 @@
+package com.company;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Immutable search type weight list. Besides the configured entries it holds a dense weight
+ * vector indexed by search type ordinal, so looking up a weight is a single array load.
+ * <p>
+ * The entries are mutable beans, so {@link #get} returns a copy; instances are cached and shared
+ * between tenants, and changing an entry in place would change every tenant's weights.
+ */
+public final class SearchTypeWeights extends AbstractList<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> implements RandomAccess {
+  private static final Logger logger = LoggerFactory.getLogger(SearchTypeWeights.class);
+
+  private final SystemConfig.SystemConfigMapper.SearchTypeWeightDefault[] entries;
+
+  // weight by search type ordinal, NaN for search types without a weight
+  private final double[] weights;
+
+  private SearchTypeWeights(SystemConfig.SystemConfigMapper.SearchTypeWeightDefault[] entries, double[] weights) {
+    this.entries = entries;
+    this.weights = weights;
+  }
+
+  /**
+   * Builds the weights of a list of entries. Entries naming an unknown search type are kept in the
+   * list but not in the vector; when the field is unique, a search type listed twice is rejected
+   * with an IllegalArgumentException, otherwise its last weight wins.
+   */
+  public static SearchTypeWeights of(Collection<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> list, boolean unique) {
+    if (list instanceof SearchTypeWeights && (!unique || ((SearchTypeWeights) list).isUnique()))
+      return (SearchTypeWeights) list;
+
+    SystemConfig.SystemConfigMapper.SearchTypeWeightDefault[] entries = new SystemConfig.SystemConfigMapper.SearchTypeWeightDefault[list.size()];
+    double[] weights = new double[SystemConfig.SystemConfigMapper.SearchType.values().length];
+    Arrays.fill(weights, Double.NaN);
+    int i = 0;
+
+    for (SystemConfig.SystemConfigMapper.SearchTypeWeightDefault item : list) {
+      // copied, since the entries are mutable beans
+      SystemConfig.SystemConfigMapper.SearchTypeWeightDefault entry = copy(item);
+      entries[i++] = entry;
+
+      SystemConfig.SystemConfigMapper.SearchType searchType = toSearchType(entry.getSearchType());
+      if (searchType == null) {
+        logger.warn("Ignoring weight of unknown search type {}", entry.getSearchType());
+        continue;
+      }
+      // the name of the constant, instead of a copy decoded for every tenant
+      entry.setSearchType(searchType.name());
+
+      if (unique && !Double.isNaN(weights[searchType.ordinal()]))
+        throw new IllegalArgumentException("search type " + searchType + " has more than one weight");
+
+      weights[searchType.ordinal()] = entry.getWeight();
+    }
+    return new SearchTypeWeights(entries, weights);
+  }
+
+  private static SystemConfig.SystemConfigMapper.SearchType toSearchType(String name) {
+    try {
+      return name == null ? null : SystemConfig.SystemConfigMapper.SearchType.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private boolean isUnique() {
+    boolean[] seen = new boolean[weights.length];
+    for (SystemConfig.SystemConfigMapper.SearchTypeWeightDefault entry : entries) {
+      SystemConfig.SystemConfigMapper.SearchType searchType = toSearchType(entry.getSearchType());
+      if (searchType == null)
+        continue;
+      if (seen[searchType.ordinal()])
+        return false;
+      seen[searchType.ordinal()] = true;
+    }
+    return true;
+  }
+
+  /**
+   * Returns a copy of the entry at the given index.
+   */
+  @Override
+  public SystemConfig.SystemConfigMapper.SearchTypeWeightDefault get(int index) {
+    return copy(entries[index]);
+  }
+
+  private static SystemConfig.SystemConfigMapper.SearchTypeWeightDefault copy(SystemConfig.SystemConfigMapper.SearchTypeWeightDefault item) {
+    SystemConfig.SystemConfigMapper.SearchTypeWeightDefault entry = new SystemConfig.SystemConfigMapper.SearchTypeWeightDefault();
+    entry.setSearchType(item.getSearchType());
+    entry.setWeight(item.getWeight());
+    return entry;
+  }
+
+  @Override
+  public int size() {
+    return entries.length;
+  }
+
+  public boolean hasWeight(SystemConfig.SystemConfigMapper.SearchType searchType) {
+    return !Double.isNaN(weights[searchType.ordinal()]);
+  }
+
+  /**
+   * Returns the weight of a search type, or NaN if it has none.
+   */
+  public double weight(SystemConfig.SystemConfigMapper.SearchType searchType) {
+    return weights[searchType.ordinal()];
+  }
+
+  public double weight(SystemConfig.SystemConfigMapper.SearchType searchType, double defaultWeight) {
+    double weight = weights[searchType.ordinal()];
+    return Double.isNaN(weight) ? defaultWeight : weight;
+  }
+
+  public double weight(int searchTypeOrdinal) {
+    return weights[searchTypeOrdinal];
+  }
+
+  /**
+   * Returns a copy of the weight vector, indexed by search type ordinal.
+   */
+  public double[] toWeightArray() {
+    return weights.clone();
+  }
+
+  /**
+   * Estimated heap size, see {@link HeapFootprint}: this object, its entries and its weight vector.
+   * The names of known search types are those of the enum constants and count nothing.
+   */
+  long estimateSize() {
+    long size = HeapFootprint.object(2, 0) + HeapFootprint.array(entries.length, HeapFootprint.REFERENCE)
+      + HeapFootprint.array(weights.length, 8);
+    for (SystemConfig.SystemConfigMapper.SearchTypeWeightDefault entry : entries) {
+      size += HeapFootprint.object(1, 8);
+      if (toSearchType(entry.getSearchType()) == null)
+        size += HeapFootprint.sizeOf(entry.getSearchType());
+    }
+    return size;
+  }
+}
@@ -0,0 +1,151 @@
+package com.company;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces bursts of settings patches per tenant into one applySettings call. Patches for a tenant
+ * are collected until the batching window elapses or the batch holds the maximum number of patches,
+ * then applied in order and persisted with a single store write, which is the same result as
+ * applying them one after the other. Each patch is validated when it is submitted, so an invalid
+ * patch is rejected on its own; a batch that fails to be written fails for all its patches.
+ */
+public class SettingsWriteBatcher implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(SettingsWriteBatcher.class);
+
+  private final SystemConfigUtil configUtil;
+  private final long windowNanos;
+  private final int maxPatches;
+
+  // each tenant is handled by one single-threaded worker, so its batches are written in order
+  private final ScheduledExecutorService[] workers;
+  private final ConcurrentMap<String, Batch> batches = new ConcurrentHashMap<>();
+
+  public SettingsWriteBatcher(SystemConfigUtil configUtil, long window, TimeUnit unit, int maxPatches, int writerThreads) {
+    if (maxPatches < 1 || writerThreads < 1)
+      throw new IllegalArgumentException("maxPatches and writerThreads must be at least 1");
+
+    this.configUtil = configUtil;
+    this.windowNanos = unit.toNanos(window);
+    this.maxPatches = maxPatches;
+    this.workers = new ScheduledExecutorService[writerThreads];
+    for (int i = 0; i < writerThreads; i++) {
+      String name = "settings-writer-" + (i + 1);
+      workers[i] = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Queues a settings patch. The returned future completes once the batch holding the patch has
+   * been persisted, or exceptionally if the patch is invalid or persisting the batch failed.
+   */
+  public CompletableFuture<Void> submit(String tenantId, String json) {
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    try {
+      configUtil.validateSettings(json);
+    } catch (Exception e) {
+      done.completeExceptionally(e);
+      return done;
+    }
+
+    Batch[] full = new Batch[1];
+    batches.compute(tenantId, (key, batch) -> {
+      if (batch == null) {
+        Batch created = new Batch();
+        created.timer = worker(key).schedule(() -> flush(key, created), windowNanos, TimeUnit.NANOSECONDS);
+        batch = created;
+      }
+
+      batch.patches.add(json);
+      batch.waiters.add(done);
+
+      if (batch.waiters.size() >= maxPatches) {
+        full[0] = batch;
+        return null;
+      }
+      return batch;
+    });
+
+    if (full[0] != null) {
+      full[0].timer.cancel(false);
+      worker(tenantId).execute(() -> write(tenantId, full[0]));
+    }
+    return done;
+  }
+
+  /**
+   * Persists the pending batch of a tenant now. The returned future completes once it is written.
+   */
+  public CompletableFuture<Void> flush(String tenantId) {
+    Batch batch = batches.remove(tenantId);
+    if (batch == null)
+      return CompletableFuture.completedFuture(null);
+
+    batch.timer.cancel(false);
+    CompletableFuture<Void> written = CompletableFuture.allOf(batch.waiters.toArray(new CompletableFuture<?>[0]));
+    worker(tenantId).execute(() -> write(tenantId, batch));
+    return written;
+  }
+
+  /**
+   * Persists the pending batches of all tenants now.
+   */
+  public CompletableFuture<Void> flush() {
+    List<CompletableFuture<Void>> flushes = new ArrayList<>();
+    for (String tenantId : new ArrayList<>(batches.keySet()))
+      flushes.add(flush(tenantId));
+    return CompletableFuture.allOf(flushes.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Persists all pending batches and stops the writer threads.
+   */
+  @Override
+  public void close() {
+    flush().join();
+    for (ScheduledExecutorService worker : workers)
+      worker.shutdown();
+  }
+
+  private void flush(String tenantId, Batch batch) {
+    if (batches.remove(tenantId, batch))
+      write(tenantId, batch);
+  }
+
+  private void write(String tenantId, Batch batch) {
+    try {
+      configUtil.applySettings(tenantId, batch.patches);
+      batch.waiters.forEach(waiter -> waiter.complete(null));
+    } catch (Exception e) {
+      logger.error("Failed to write {} batched settings patches of tenant {} for reason: {}", batch.waiters.size(), tenantId, e);
+      batch.waiters.forEach(waiter -> waiter.completeExceptionally(e));
+    }
+  }
+
+  private ScheduledExecutorService worker(String tenantId) {
+    int h = tenantId.hashCode();
+    h ^= h >>> 16;
+    return workers[(h & 0x7fffffff) % workers.length];
+  }
+
+  private static class Batch {
+    private final List<String> patches = new ArrayList<>();
+    private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+  }
+}
@@ -0,0 +1,24 @@
+package com.company;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared by hashing keys onto them, so operations on the same key are
+ * serialized while operations on different keys mostly run in parallel.
+ */
+public class StripedLocks {
+  private final ReentrantLock[] locks;
+
+  public StripedLocks(int stripes) {
+    int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    locks = new ReentrantLock[size];
+    for (int i = 0; i < size; i++)
+      locks[i] = new ReentrantLock();
+  }
+
+  public ReentrantLock get(String key) {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    return locks[h & (locks.length - 1)];
+  }
+}
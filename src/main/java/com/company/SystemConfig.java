@@ -3,6 +3,7 @@ package com.company;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -13,15 +14,16 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class SystemConfig {
   private static final Logger logger = LoggerFactory.getLogger(SystemConfig.class);
   public static String defaultConfig;
 
-  // static initializer to load default system configuration
+  // static initializer to load default system configuration, unless the build precompiled it
   static {
-    if (StringUtils.isBlank(defaultConfig)) {
+    if (StringUtils.isBlank(defaultConfig) && SystemConfig.class.getResource(SchemaSnapshot.RESOURCE) == null) {
       try (BufferedReader reader = new BufferedReader(new InputStreamReader(
         SystemConfig.class.getResourceAsStream("/config/SystemConfiguration.json")))) {
 
@@ -53,7 +55,11 @@ public class SystemConfig {
       @JsonSubTypes.Type(value = DecimalField.class, name = "DecimalField"),
       @JsonSubTypes.Type(value = OntologyList.class, name = "OntologyList"),
       @JsonSubTypes.Type(value = SearchTypeWeightList.class, name = "SearchTypeWeightList"),
-      @JsonSubTypes.Type(value = SearchTypeList.class, name = "SearchTypeList")
+      @JsonSubTypes.Type(value = SearchTypeList.class, name = "SearchTypeList"),
+      @JsonSubTypes.Type(value = LongField.class, name = "LongField"),
+      @JsonSubTypes.Type(value = StringList.class, name = "StringList"),
+      @JsonSubTypes.Type(value = DurationField.class, name = "DurationField"),
+      @JsonSubTypes.Type(value = StringMap.class, name = "StringMap")
     })
     @Getter
     @Setter
@@ -100,6 +106,25 @@ public class SystemConfig {
       private double defaultValue;
     }
 
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class LongField extends SingleField {
+      @JsonProperty("defaultValue")
+      private long defaultValue;
+    }
+
+    /**
+     * A duration given as an ISO-8601 string such as PT30S.
+     */
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class DurationField extends SingleField {
+      @JsonProperty("defaultValue")
+      private String defaultValue;
+    }
+
     @Getter
     @Setter
     @NoArgsConstructor
@@ -111,6 +136,25 @@ public class SystemConfig {
       private boolean array;
     }
 
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class StringList extends SingleField {
+      @JsonProperty("defaultValue")
+      private List<String> defaultValue;
+
+      @JsonProperty("array")
+      private boolean array;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    public static class StringMap extends SingleField {
+      @JsonProperty("defaultValue")
+      private Map<String, String> defaultValue;
+    }
+
     @Getter
     @Setter
     @NoArgsConstructor
@@ -197,6 +241,7 @@ public class SystemConfig {
     @Getter
     @Setter
     @NoArgsConstructor
+    @EqualsAndHashCode
     public static class SearchTypeWeightDefault {
       @JsonProperty("searchType")
       private String searchType;
@@ -1,7 +1,5 @@
 package com.company;
 
-import com.aisera.common.config.DynamicProperties;
-import com.aisera.common.config.SystemConfig;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -9,125 +7,269 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class SystemConfigUtil {
 
   private static final Logger logger = LoggerFactory.getLogger(SystemConfigUtil.class);
-  private static SystemConfigUtil instance;
+  private static volatile SystemConfigUtil instance;
+  private static CompletableFuture<SystemConfigUtil> initialization;
+  private final byte[] configSnapshot;
   private List<SystemConfig.SystemConfigMapper> config;
+  private ConfigSchema schema;
+  private TenantConfigSnapshot defaultSnapshot;
+  private TenantConfigDecoder decoder;
+  private TenantConfigCodec codec;
+  private long loadNanos;
   ObjectMapper mapper = new ObjectMapper();
   private static final String TENANT_CONFIG_KEY = "tenantConfig";
+  private static final int MAX_WRITE_ATTEMPTS = 10;
 
-  private SystemConfigUtil() throws Exception {
-    String json = com.aisera.common.config.SystemConfig.defaultConfig;
-    config = Arrays.asList(mapper.readValue(json, com.aisera.common.config.SystemConfig.SystemConfigMapper[].class));
+  // read once into a local per call, so a concurrent setStore or setMetrics cannot split a
+  // read-modify-write across two stores or pair one implementation's start with another's latency
+  private volatile TenantConfigStore store = new DynamicPropertiesStore();
+  private volatile ConfigMetrics metrics = ConfigMetrics.NONE;
+  private final StripedLocks writeLocks = new StripedLocks(256);
+
+  // resolved (defaults + saved settings) config per tenant; entries are replaced by applySettings
+  private final TenantConfigCache tenantConfigs = new TenantConfigCache(this::loadTenantSnapshot);
+
+  /**
+   * Creates an instance over the given system configuration rather than the shared one, e.g. for
+   * benchmarks over generated schemas.
+   */
+  SystemConfigUtil(String defaultConfigJson) throws Exception {
+    this(SchemaSnapshot.encode(SchemaSnapshot.parseJson(defaultConfigJson)));
+  }
+
+  private SystemConfigUtil(byte[] configSnapshot) throws Exception {
+    // config copies are decoded from the binary snapshot, which is cheaper than parsing the JSON again
+    this.configSnapshot = configSnapshot;
+    config = SchemaSnapshot.decodeVerified(configSnapshot);
+    schema = ConfigSchema.compile(config);
+    defaultSnapshot = TenantConfigSnapshot.defaults(schema);
+    decoder = new TenantConfigDecoder(schema, mapper);
+    codec = new TenantConfigCodec(schema, decoder, mapper);
   }
 
   public static SystemConfigUtil getInstance() {
     if (instance != null)
       return instance;
 
+    CompletableFuture<SystemConfigUtil> pending;
     synchronized (SystemConfigUtil.class) {
-      if (instance == null) {
-        try {
-          instance = new SystemConfigUtil();
-        } catch (Exception e) {
-          instance = null;
-          logger.error("Failed to load system configuration.", e);
+      pending = initialization;
+      if (pending == null) {
+        if (instance == null) {
+          try {
+            instance = create();
+          } catch (Exception e) {
+            instance = null;
+            logger.error("Failed to load system configuration.", e);
+          }
         }
+        return instance;
       }
-      return instance;
+    }
+
+    // the configuration is being loaded in the background; wait for it instead of loading it twice
+    try {
+      return pending.join();
+    } catch (CompletionException | CancellationException e) {
+      return null;
     }
   }
 
+  /**
+   * Starts loading the system configuration on a background thread, so that it is not loaded by
+   * the first request to read a setting. Returns a future that completes with the instance once it
+   * is ready, or exceptionally if loading failed; after a failure the next call starts over.
+   */
+  public static CompletableFuture<SystemConfigUtil> initializeAsync() {
+    synchronized (SystemConfigUtil.class) {
+      if (instance != null)
+        return CompletableFuture.completedFuture(instance);
 
-  public List<SystemConfig.SystemConfigMapper> getConfig() {
-    return config;
-  }
+      if (initialization == null) {
+        CompletableFuture<SystemConfigUtil> pending = new CompletableFuture<>();
+        initialization = pending;
 
-  public List<SystemConfig.SystemConfigMapper> getConfigCopy() throws Exception {
-    String json = com.aisera.common.config.SystemConfig.defaultConfig;
-    return Arrays.asList(mapper.readValue(json, com.aisera.common.config.SystemConfig.SystemConfigMapper[].class));
+        Thread thread = new Thread(() -> initialize(pending), "system-config-init");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      return initialization;
+    }
   }
 
-  private JsonNode getSavedJson(String tenantId) throws Exception {
+  private static void initialize(CompletableFuture<SystemConfigUtil> pending) {
     try {
-      String jsonString = getSavedVal(tenantId);
-      if (StringUtils.isBlank(jsonString))
-        return new ObjectMapper().readTree("{}");
-
-      return new ObjectMapper().readTree(jsonString);
+      SystemConfigUtil util = create();
+      synchronized (SystemConfigUtil.class) {
+        instance = util;
+        initialization = null;
+      }
+      pending.complete(util);
     } catch (Exception e) {
-      logger.error("Failed to deserialize saved config for reason: {}", e);
-      return new ObjectMapper().readTree("{}");
+      logger.error("Failed to load system configuration.", e);
+      synchronized (SystemConfigUtil.class) {
+        initialization = null;
+      }
+      pending.completeExceptionally(e);
     }
   }
 
-  private String getSavedVal(String tenantId) throws Exception {
-    AtomicReference<String> val = new AtomicReference<>();
-    try {
-      DynamicProperties.getInstance().ifPresent(instance -> instance.getProperty(tenantId, TENANT_CONFIG_KEY)
-        .ifPresent(item -> val.set(item)));
-    } catch (Exception e) {
+  /**
+   * Loads the system configuration from {@link SystemConfig#defaultConfig} if it was set, and from
+   * the precompiled schema snapshot otherwise.
+   */
+  private static SystemConfigUtil create() throws Exception {
+    long start = System.nanoTime();
+    String json = SystemConfig.defaultConfig;
+    SystemConfigUtil util;
+    if (StringUtils.isNotBlank(json)) {
+      util = new SystemConfigUtil(json);
+    } else {
+      byte[] snapshot = SchemaSnapshot.readResource();
+      if (snapshot == null)
+        throw new IllegalStateException("Neither the system configuration nor its snapshot "
+          + SchemaSnapshot.RESOURCE + " was found");
+      util = new SystemConfigUtil(snapshot);
     }
-    return val.get();
+
+    util.loadNanos = System.nanoTime() - start;
+    logger.info("Loaded system configuration with {} fields from {} in {} ms, {} ms after JVM start",
+      util.schema.size(), StringUtils.isNotBlank(json) ? "JSON" : "snapshot", TimeUnit.NANOSECONDS.toMillis(util.loadNanos),
+      ManagementFactory.getRuntimeMXBean().getUptime());
+    return util;
   }
 
-  private void saveConfigJson(String tenantId, String key, String json) {
-    DynamicProperties.getInstance().ifPresent(instance -> {
-      try {
-        instance.setProperty(tenantId, key, json);
-      } catch (Exception e) {
-      }
-    });
+  /**
+   * Time it took to load the system configuration of the shared instance, 0 for other instances.
+   */
+  public long getLoadNanos() {
+    return loadNanos;
   }
 
-  public String getDefaultConfigJson() throws Exception {
-    List<SystemConfig.SystemConfigMapper> configs = getConfig();
-    return getConfigJson(configs);
+
+  public List<SystemConfig.SystemConfigMapper> getConfig() {
+    return config;
   }
 
-  public String getConfigJson(List<SystemConfig.SystemConfigMapper> configs) throws Exception {
-    return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(getConfigJsonObject(configs));
+  public ConfigSchema getSchema() {
+    return schema;
   }
 
-  private ObjectNode getConfigJsonObject(List<SystemConfig.SystemConfigMapper> configs) throws Exception {
-    try {
+  public List<SystemConfig.SystemConfigMapper> getConfigCopy() throws Exception {
+    metrics.recordSchemaParse();
+    List<SystemConfig.SystemConfigMapper> copy = SchemaSnapshot.decode(configSnapshot);
+    schema.shareMetadata(copy);
+    return copy;
+  }
+
+  private String readStored(TenantConfigStore store, String tenantId) throws Exception {
+    String saved = store.get(tenantId, TENANT_CONFIG_KEY).orElse(null);
+    metrics.recordStoreRead(saved == null ? 0 : utf8Length(saved));
+    return saved;
+  }
+
+  private boolean writeStored(TenantConfigStore store, String tenantId, String expected, String value) throws Exception {
+    boolean written = store.compareAndSet(tenantId, TENANT_CONFIG_KEY, expected, value);
+    metrics.recordStoreWrite(utf8Length(value), written);
+    return written;
+  }
+
+  /**
+   * Number of bytes of a string encoded as UTF-8, without encoding it.
+   */
+  static int utf8Length(String value) {
+    int length = value.length();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (Character.isSurrogate(c)) {
+        // 4 bytes for a pair; a lone surrogate is encoded as '?'
+        if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+          length += 2;
+          i++;
+        }
+      } else if (c >= 0x800) {
+        length += 2;
+      } else if (c >= 0x80) {
+        length++;
+      }
+    }
+    return length;
+  }
 
-      ObjectNode objNode = mapper.createObjectNode();
+  public TenantConfigStore getStore() {
+    return store;
+  }
 
-      configs.stream().forEach(item -> {
-        item.getFields().stream().forEach(field -> {
-          if (field instanceof SystemConfig.SystemConfigMapper.IntegerField) {
-            objNode.put(field.getField(), ((SystemConfig.SystemConfigMapper.IntegerField) field).getDefaultValue());
+  /**
+   * Returns the tenants with a stored config. Throws UnsupportedOperationException if the store
+   * cannot list its tenants.
+   */
+  public Set<String> getStoredTenantIds() throws Exception {
+    return store.getTenantIds(TENANT_CONFIG_KEY);
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.BoolField) {
-            objNode.put(field.getField(), ((SystemConfig.SystemConfigMapper.BoolField) field).isDefaultValue());
+  /**
+   * Replaces the store holding tenant configs and drops all cached tenant configs.
+   */
+  public void setStore(TenantConfigStore store) {
+    this.store = store;
+    tenantConfigs.invalidateAll();
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.StringField) {
-            objNode.put(field.getField(), ((SystemConfig.SystemConfigMapper.StringField) field).getDefaultValue());
+  public ConfigMetrics getMetrics() {
+    return metrics;
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.DecimalField) {
-            objNode.put(field.getField(), ((SystemConfig.SystemConfigMapper.DecimalField) field).getDefaultValue());
+  /**
+   * Sets where measurements go, e.g. a {@link ConfigStatistics} registered with JMX. Defaults to
+   * {@link ConfigMetrics#NONE}.
+   */
+  public void setMetrics(ConfigMetrics metrics) {
+    this.metrics = metrics;
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.IntegerList) {
-            objNode.putPOJO(field.getField(), ((SystemConfig.SystemConfigMapper.IntegerList) field).getDefaultValue());
+  public String getDefaultConfigJson() throws Exception {
+    List<SystemConfig.SystemConfigMapper> configs = getConfig();
+    return getConfigJson(configs);
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.OntologyList) {
-            objNode.putPOJO(field.getField(), ((SystemConfig.SystemConfigMapper.OntologyList) field).getDefaultValue());
+  public String getConfigJson(List<SystemConfig.SystemConfigMapper> configs) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(getConfigJsonObject(configs));
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_CONFIG_JSON, start);
+    }
+  }
 
+  private ObjectNode getConfigJsonObject(List<SystemConfig.SystemConfigMapper> configs) throws Exception {
+    try {
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.SearchTypeList) {
-            objNode.putPOJO(field.getField(), ((SystemConfig.SystemConfigMapper.SearchTypeList) field).getDefaultValue());
+      ObjectNode objNode = mapper.createObjectNode();
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.SearchTypeWeightList) {
-            objNode.putPOJO(field.getField(), ((SystemConfig.SystemConfigMapper.SearchTypeWeightList) field).getDefaultValue());
-          }
-        });
-      });
+      for (ConfigSchema.FieldDescriptor descriptor : schema.getFields()) {
+        SystemConfig.SystemConfigMapper.SingleField field = descriptor.locate(configs);
+        descriptor.getType().write(objNode, field.getField(), descriptor.getType().getValue(field));
+      }
 
       return objNode;
     } catch (Exception e) {
@@ -136,464 +278,675 @@ public class SystemConfigUtil {
     }
   }
 
+  /**
+   * Returns the resolved config of a tenant as a new tree that the caller may modify.
+   * Lookups of single values should go through the getters, which read the cached snapshot.
+   */
   public List<SystemConfig.SystemConfigMapper> getTenantConfig(String tenantId) throws Exception {
-    List<SystemConfig.SystemConfigMapper> newConfigs = getConfigCopy();
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      List<SystemConfig.SystemConfigMapper> configs = getConfigCopy();
+      getTenantSnapshot(tenantId).applyTo(configs);
+      return configs;
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_TENANT_CONFIG, start);
+    }
+  }
+
+  /**
+   * Returns the cached, immutable snapshot of the resolved config of a tenant. If its stored config
+   * cannot be read or decoded, returns the defaults without caching them, so the next call reads
+   * the store again.
+   */
+  public TenantConfigSnapshot getTenantSnapshot(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      JsonNode savedConfig = getSavedJson(tenantId);
-      applySettingsToConfig(savedConfig, newConfigs);
+      return tenantConfigs.get(tenantId);
     } catch (Exception e) {
+      metrics.recordSwallowedException(ConfigMetrics.Operation.GET_TENANT_SNAPSHOT, e);
+      logger.error("Failed to load config of tenant {}, using the defaults, for reason: {}", tenantId, e);
+      return defaultSnapshot;
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_TENANT_SNAPSHOT, start);
     }
-    return newConfigs;
   }
 
-  public void applySettings(String tenantId, String json) throws Exception {
+  /**
+   * Returns the cached snapshot of a tenant, loading it if needed. Unlike {@link #getTenantSnapshot},
+   * a failure to read or decode the stored config is thrown rather than replaced by the defaults.
+   */
+  public TenantConfigSnapshot resolveTenantSnapshot(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      JsonNode newSettings = new ObjectMapper().readTree(json);
-      JsonNode savedConfig = getSavedJson(tenantId);
-      List<SystemConfig.SystemConfigMapper> newConfigs = getConfigCopy();
-
-      applySettingsToConfig(savedConfig, newConfigs);
-      applySettingsToConfig(newSettings, newConfigs);
+      return tenantConfigs.get(tenantId);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_TENANT_SNAPSHOT, start);
+    }
+  }
 
-      String newConfigJson = getConfigJson(newConfigs);
-      saveConfigJson(tenantId, TENANT_CONFIG_KEY, newConfigJson);
+  /**
+   * Returns a view bound to one resolution of the tenant config, for reading several settings consistently.
+   */
+  public TenantView getTenantView(String tenantId) throws Exception {
+    return new TenantView(tenantId, getTenantSnapshot(tenantId));
+  }
 
-    } catch (Exception e) {
-      logger.error("Failed apply settings to eixsting config for reason: {}", e);
-      throw e;
+  /**
+   * Resolves several keys of a tenant from one snapshot. Keys that are not in the schema are left out.
+   */
+  public Map<String, Object> getKeys(String tenantId, Set<String> keys) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      TenantView view = getTenantView(tenantId);
+      Map<String, Object> values = new LinkedHashMap<>();
+      for (String key : keys) {
+        if (schema.getField(key) != null)
+          values.put(key, view.get(key));
+      }
+      return values;
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEYS, start);
     }
   }
 
-  public void applySettingsToConfig(JsonNode savedConfig, List<SystemConfig.SystemConfigMapper> configs) throws Exception {
-    try {
-      configs.stream().forEach(item -> {
-        item.getFields().stream().forEach(field -> {
-          if (field instanceof SystemConfig.SystemConfigMapper.IntegerField) {
-            applyIntegerField(savedConfig, ((SystemConfig.SystemConfigMapper.IntegerField) field));
+  /**
+   * Estimates the heap taken by the cached config of a tenant, or returns null if it is not cached.
+   */
+  public HeapFootprint.Tenant getHeapFootprint(String tenantId) {
+    TenantConfigSnapshot snapshot = tenantConfigs.getIfPresent(tenantId);
+    return snapshot == null ? null : HeapFootprint.of(tenantId, snapshot);
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.BoolField) {
-            applyBoolField(savedConfig, ((SystemConfig.SystemConfigMapper.BoolField) field));
+  /**
+   * Estimates the heap taken by all cached tenant configs.
+   */
+  public HeapFootprint getHeapFootprint() {
+    return HeapFootprint.of(tenantConfigs.asMap());
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.StringField) {
-            applyStringField(savedConfig, ((SystemConfig.SystemConfigMapper.StringField) field));
+  /**
+   * Drops the cached config of a tenant, e.g. after its settings were changed outside this JVM.
+   */
+  public void invalidateTenantConfig(String tenantId) {
+    tenantConfigs.invalidate(tenantId);
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.DecimalField) {
-            applyDecimalField(savedConfig, ((SystemConfig.SystemConfigMapper.DecimalField) field));
+  public void invalidateAllTenantConfigs() {
+    tenantConfigs.invalidateAll();
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.IntegerList) {
-            applyIntegerList(savedConfig, ((SystemConfig.SystemConfigMapper.IntegerList) field));
+  public TenantConfigCodec.Format getStorageFormat() {
+    return codec.getFormat();
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.OntologyList) {
-            applyOntologyList(savedConfig, ((SystemConfig.SystemConfigMapper.OntologyList) field));
+  /**
+   * Sets the format tenant configs are stored in. Configs stored in another format, or in Smile for
+   * another schema, stay readable and are rewritten in the current format when next loaded.
+   */
+  public void setStorageFormat(TenantConfigCodec.Format format) {
+    codec.setFormat(format);
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.SearchTypeList) {
-            applySearchTypeList(savedConfig, ((SystemConfig.SystemConfigMapper.SearchTypeList) field));
+  private TenantConfigSnapshot loadTenantSnapshot(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      // read and decode failures are thrown, so the cache drops the load instead of keeping the defaults
+      TenantConfigStore store = this.store;
+      String saved = readStored(store, tenantId);
+      TenantConfigSnapshot.Builder builder = defaultSnapshot.toBuilder();
+      if (StringUtils.isNotBlank(saved))
+        codec.decode(saved, builder);
+      TenantConfigSnapshot snapshot = builder.build();
+
+      if (StringUtils.isNotBlank(saved) && !codec.isCurrent(saved))
+        upgradeStoredConfig(store, tenantId, saved, snapshot);
+      return snapshot;
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.LOAD_TENANT_CONFIG, start);
+    }
+  }
+
+  /**
+   * Re-encodes a stored config in the current format, unless that leaves it unchanged. Best effort:
+   * skipped if a write for the tenant is in progress, and lost if the stored config changed since it
+   * was read.
+   */
+  private void upgradeStoredConfig(TenantConfigStore store, String tenantId, String saved, TenantConfigSnapshot snapshot) {
+    ReentrantLock lock = writeLocks.get(tenantId);
+    if (!lock.tryLock())
+      return;
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.SearchTypeWeightList) {
-            applySearchTypeWeightList(savedConfig, ((SystemConfig.SystemConfigMapper.SearchTypeWeightList) field));
-          }
-        });
-      });
+    try {
+      String stored = getStoredConfig(snapshot);
+      if (!stored.equals(saved) && writeStored(store, tenantId, saved, stored))
+        logger.debug("Upgraded stored config of tenant {} to {}", tenantId, codec.getFormat());
     } catch (Exception e) {
-      logger.error("Failed to build tenant JSON object for reason: {}", e);
+      metrics.recordSwallowedException(ConfigMetrics.Operation.LOAD_TENANT_CONFIG, e);
+      logger.warn("Failed to upgrade stored config of tenant {} for reason: {}", tenantId, e);
+    } finally {
+      lock.unlock();
     }
   }
 
-
-  public String getTenantConfigJson(String tenantId) throws Exception {
-    return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(getTenantConfigJsonObject(tenantId));
+  /**
+   * Decodes the stored config a settings patch is merged into. A config that cannot be decoded is
+   * logged and replaced by the patched defaults, so a corrupt config does not block every write.
+   */
+  private void decodeSavedConfig(String saved, TenantConfigSnapshot.Builder builder) {
+    try {
+      if (StringUtils.isNotBlank(saved))
+        codec.decode(saved, builder);
+    } catch (Exception e) {
+      metrics.recordSwallowedException(ConfigMetrics.Operation.APPLY_SETTINGS, e);
+      logger.error("Failed to deserialize saved config for reason: {}", e);
+    }
   }
 
-  private ObjectNode getTenantConfigJsonObject(String tenantId) throws Exception {
-    JsonNode savedConfig = getSavedJson(tenantId);
-    return mergeToDefault(savedConfig);
+  /**
+   * Merges settings into the stored config of a tenant. Every stored config carries a version; the
+   * write only succeeds if the stored config is still the one the settings were merged into, and is
+   * retried on a fresh read otherwise. Writes for the same tenant in this JVM are serialized. A
+   * {@value TenantConfigDecoder#VERSION_FIELD} field in the settings is ignored.
+   */
+  public void applySettings(String tenantId, String json) throws Exception {
+    applySettings(tenantId, Collections.singletonList(json));
   }
 
-  public ObjectNode mergeToDefault(JsonNode savedConfig) throws Exception {
+  /**
+   * Merges several settings patches into the stored config of a tenant with a single write. The
+   * patches are applied in order, with the same result as applying them one after the other; if one
+   * of them cannot be applied, none is.
+   */
+  public void applySettings(String tenantId, List<String> patches) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      List<SystemConfig.SystemConfigMapper> configs = SystemConfigUtil.getInstance().getConfig();
-      ObjectMapper mapper = new ObjectMapper();
-      ObjectNode objNode = mapper.createObjectNode();
+      writeSettings(tenantId, patches);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.APPLY_SETTINGS, start);
+    }
+  }
 
-      configs.stream().forEach(item -> {
-        item.getFields().stream().forEach(field -> {
-          if (field instanceof SystemConfig.SystemConfigMapper.IntegerField) {
-            addIntegerField(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.IntegerField) field));
+  /**
+   * Checks that a settings patch can be applied, without applying it.
+   */
+  public void validateSettings(String json) throws IOException {
+    decoder.decode(json, defaultSnapshot.toBuilder());
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.BoolField) {
-            addBoolField(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.BoolField) field));
+  private void writeSettings(String tenantId, List<String> patches) throws Exception {
+    TenantConfigStore store = this.store;
+    ReentrantLock lock = writeLocks.get(tenantId);
+    lock.lock();
+    try {
+      for (int attempt = 1; ; attempt++) {
+        String savedJson = readStored(store, tenantId);
+        TenantConfigSnapshot.Builder builder = defaultSnapshot.toBuilder();
+
+        decodeSavedConfig(savedJson, builder);
+        // the version is owned by the store; a _version in the patch is ignored
+        long version = builder.getVersion();
+        for (String json : patches)
+          decoder.decode(json, builder);
+        builder.setVersion(version + 1);
+
+        TenantConfigSnapshot snapshot = builder.build();
+        if (writeStored(store, tenantId, savedJson, getStoredConfig(snapshot))) {
+          tenantConfigs.put(tenantId, snapshot);
+          return;
+        }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.StringField) {
-            addStringField(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.StringField) field));
+        if (attempt >= MAX_WRITE_ATTEMPTS)
+          throw new ConcurrentModificationException("Config of tenant " + tenantId + " kept changing during "
+            + MAX_WRITE_ATTEMPTS + " attempts to apply settings");
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.DecimalField) {
-            addDecimalField(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.DecimalField) field));
+        logger.warn("Config of tenant {} changed concurrently, retrying to apply settings", tenantId);
+      }
+    } catch (Exception e) {
+      logger.error("Failed apply settings to eixsting config for reason: {}", e);
+      throw e;
+    } finally {
+      lock.unlock();
+    }
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.IntegerList) {
-            addIntegerList(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.IntegerList) field));
+  /**
+   * Rewrites the stored config of a tenant into its delta form, keeping only the fields that differ
+   * from the current defaults, in the current storage format. Stored values that equal an older
+   * default cannot be told apart from deliberate overrides and are kept. Returns whether the stored
+   * config was rewritten.
+   */
+  public boolean migrateToDelta(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      return rewriteAsDelta(tenantId);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.MIGRATE_TO_DELTA, start);
+    }
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.OntologyList) {
-            addOntologyList(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.OntologyList) field));
+  private boolean rewriteAsDelta(String tenantId) throws Exception {
+    TenantConfigStore store = this.store;
+    ReentrantLock lock = writeLocks.get(tenantId);
+    lock.lock();
+    try {
+      for (int attempt = 1; ; attempt++) {
+        String savedJson = readStored(store, tenantId);
+        if (StringUtils.isBlank(savedJson))
+          return false;
+
+        TenantConfigSnapshot.Builder builder = defaultSnapshot.toBuilder();
+        codec.decode(savedJson, builder);
+        TenantConfigSnapshot current = builder.build();
+        if (savedJson.equals(getStoredConfig(current)))
+          return false;
+
+        TenantConfigSnapshot snapshot = builder.setVersion(current.getVersion() + 1).build();
+        if (writeStored(store, tenantId, savedJson, getStoredConfig(snapshot))) {
+          tenantConfigs.put(tenantId, snapshot);
+          return true;
+        }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.SearchTypeList) {
-            addSearchTypeList(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.SearchTypeList) field));
+        if (attempt >= MAX_WRITE_ATTEMPTS)
+          throw new ConcurrentModificationException("Config of tenant " + tenantId + " kept changing during "
+            + MAX_WRITE_ATTEMPTS + " attempts to migrate it");
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
 
-          } else if (field instanceof SystemConfig.SystemConfigMapper.SearchTypeWeightList) {
-            addSearchTypeWeightList(savedConfig, objNode, ((SystemConfig.SystemConfigMapper.SearchTypeWeightList) field));
-          }
-        });
-      });
+  /**
+   * Rewrites the stored configs of the given tenants into their delta form. Tenants that fail to
+   * migrate are logged and skipped. Returns the number of rewritten configs.
+   */
+  public int migrateToDelta(Collection<String> tenantIds) {
+    int migrated = 0;
+    for (String tenantId : tenantIds) {
+      try {
+        if (migrateToDelta(tenantId))
+          migrated++;
+      } catch (Exception e) {
+        metrics.recordSwallowedException(ConfigMetrics.Operation.MIGRATE_TO_DELTA, e);
+        logger.error("Failed to migrate config of tenant {} for reason: {}", tenantId, e);
+      }
+    }
+    logger.info("Migrated {} of {} tenant configs to delta form", migrated, tenantIds.size());
+    return migrated;
+  }
 
-      return objNode;
-    } catch (Exception e) {
-      logger.error("Failed to build tenant JSON object for reason: {}", e);
-      return null;
+  /**
+   * Copies the values present in the given settings into a snapshot builder.
+   */
+  public void applySettingsToSnapshot(JsonNode settings, TenantConfigSnapshot.Builder builder) {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      copySettingsToSnapshot(settings, builder);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.APPLY_SETTINGS_TO_SNAPSHOT, start);
     }
   }
 
-  private void addIntegerField(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.IntegerField field) {
-    if (savedConfig.get(field.getField()) != null)
-      objNode.put(field.getField(), savedConfig.get(field.getField()).intValue());
-    else
-      objNode.put(field.getField(), field.getDefaultValue());
+  private void copySettingsToSnapshot(JsonNode settings, TenantConfigSnapshot.Builder builder) {
+    for (ConfigSchema.FieldDescriptor descriptor : schema.getFields()) {
+      JsonNode value = settings.get(descriptor.getName());
+      if (value == null)
+        continue;
+
+      try {
+        descriptor.getType().decode(value, builder, descriptor.getOrdinal());
+      } catch (Exception e) {
+        metrics.recordSwallowedException(ConfigMetrics.Operation.APPLY_SETTINGS_TO_SNAPSHOT, e);
+        logger.error("Failed to apply {} for reason: {}", descriptor.getName(), e);
+      }
+    }
   }
 
-  private void addBoolField(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.BoolField field) {
-    if (savedConfig.get(field.getField()) != null)
-      objNode.put(field.getField(), savedConfig.get(field.getField()).booleanValue());
-    else
-      objNode.put(field.getField(), field.isDefaultValue());
+  private String getSnapshotJson(TenantConfigSnapshot snapshot) throws Exception {
+    return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(getSnapshotJsonObject(mapper.createObjectNode(), snapshot, false));
   }
 
-  private void addStringField(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.StringField field) {
-    if (savedConfig.get(field.getField()) != null)
-      objNode.put(field.getField(), savedConfig.get(field.getField()).textValue());
-    else
-      objNode.put(field.getField(), field.getDefaultValue());
+  /**
+   * Renders the stored form of a tenant config: its version and the fields that differ from the
+   * defaults, encoded in the current storage format.
+   */
+  private String getStoredConfig(TenantConfigSnapshot snapshot) throws Exception {
+    ObjectNode objNode = mapper.createObjectNode();
+    objNode.put(TenantConfigDecoder.VERSION_FIELD, snapshot.getVersion());
+    return codec.encode(getSnapshotJsonObject(objNode, snapshot, true));
   }
 
-  private void addDecimalField(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.DecimalField field) {
-    if (savedConfig.get(field.getField()) != null)
-      objNode.put(field.getField(), savedConfig.get(field.getField()).doubleValue());
-    else
-      objNode.put(field.getField(), field.getDefaultValue());
+  private ObjectNode getSnapshotJsonObject(ObjectNode objNode, TenantConfigSnapshot snapshot, boolean overridesOnly) {
+
+    for (ConfigSchema.FieldDescriptor descriptor : schema.getFields()) {
+      int ordinal = descriptor.getOrdinal();
+      if (overridesOnly && !snapshot.isOverridden(ordinal))
+        continue;
+
+      descriptor.getType().encode(snapshot, ordinal, objNode, descriptor.getName());
+    }
+
+    return objNode;
   }
 
-  private void addIntegerList(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.IntegerList field) {
+  public void applySettingsToConfig(JsonNode savedConfig, List<SystemConfig.SystemConfigMapper> configs) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      if (savedConfig.get(field.getField()) != null) {
-        List<Integer> savedField = Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(), Integer[].class));
-        objNode.putPOJO(field.getField(), savedField);
-      } else
-        objNode.putPOJO(field.getField(), field.getDefaultValue());
-    } catch (Exception e) {
-      logger.error("Failed to add IntegerList for reason: {}", e);
+      copySettingsToConfig(savedConfig, configs);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.APPLY_SETTINGS_TO_CONFIG, start);
     }
   }
 
-  private void addOntologyList(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.OntologyList field) {
-    try {
-      if (savedConfig.get(field.getField()) != null) {
-        List<SystemConfig.SystemConfigMapper.Ontology> savedField = Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(),
-          SystemConfig.SystemConfigMapper.Ontology[].class));
-        objNode.putPOJO(field.getField(), savedField);
-      } else
-        objNode.putPOJO(field.getField(), field.getDefaultValue());
-    } catch (Exception e) {
-      logger.error("Failed to add OntologyList for reason: {}", e);
+  private void copySettingsToConfig(JsonNode savedConfig, List<SystemConfig.SystemConfigMapper> configs) {
+    for (ConfigSchema.FieldDescriptor descriptor : schema.getFields()) {
+      JsonNode value = savedConfig.get(descriptor.getName());
+      if (value == null)
+        continue;
+
+      FieldType type = descriptor.getType();
+      try {
+        type.setValue(descriptor.locate(configs), type.read(value));
+      } catch (Exception e) {
+        metrics.recordSwallowedException(ConfigMetrics.Operation.APPLY_SETTINGS_TO_CONFIG, e);
+        logger.error("Failed to apply {} for reason: {}", descriptor.getName(), e);
+      }
     }
   }
 
-  private void addSearchTypeList(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.SearchTypeList field) {
+
+  public String getTenantConfigJson(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      if (savedConfig.get(field.getField()) != null) {
-        List<SystemConfig.SystemConfigMapper.SearchType> savedField = Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(),
-          SystemConfig.SystemConfigMapper.SearchType[].class));
-        objNode.putPOJO(field.getField(), savedField);
-      } else
-        objNode.putPOJO(field.getField(), field.getDefaultValue());
-    } catch (Exception e) {
-      logger.error("Failed to add SearchTypeList for reason: {}", e);
+      return getSnapshotJson(getTenantSnapshot(tenantId));
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_TENANT_CONFIG_JSON, start);
     }
   }
 
-  private void addSearchTypeWeightList(JsonNode savedConfig, ObjectNode objNode, SystemConfig.SystemConfigMapper.SearchTypeWeightList field) {
+  public ObjectNode mergeToDefault(JsonNode savedConfig) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      if (savedConfig.get(field.getField()) != null) {
-        List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> savedField = Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(),
-          SystemConfig.SystemConfigMapper.SearchTypeWeightDefault[].class));
-        objNode.putPOJO(field.getField(), savedField);
-      } else
-        objNode.putPOJO(field.getField(), field.getDefaultValue());
-    } catch (Exception e) {
-      logger.error("Failed to add SearchTypeWeightList for reason: {}", e);
+      return mergeSettingsWithDefaults(savedConfig);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.MERGE_TO_DEFAULT, start);
     }
   }
 
-  private void applyIntegerField(JsonNode savedConfig, SystemConfig.SystemConfigMapper.IntegerField field) {
-    if (savedConfig.get(field.getField()) != null)
-      field.setDefaultValue(savedConfig.get(field.getField()).intValue());
-  }
+  private ObjectNode mergeSettingsWithDefaults(JsonNode savedConfig) {
+    ObjectNode objNode = mapper.createObjectNode();
 
-  private void applyBoolField(JsonNode savedConfig, SystemConfig.SystemConfigMapper.BoolField field) {
-    if (savedConfig.get(field.getField()) != null)
-      field.setDefaultValue(savedConfig.get(field.getField()).booleanValue());
-  }
+    for (ConfigSchema.FieldDescriptor descriptor : schema.getFields()) {
+      JsonNode value = savedConfig.get(descriptor.getName());
+      FieldType type = descriptor.getType();
+      try {
+        type.write(objNode, descriptor.getName(), value != null ? type.read(value) : type.getValue(descriptor.getDefinition()));
+      } catch (Exception e) {
+        metrics.recordSwallowedException(ConfigMetrics.Operation.MERGE_TO_DEFAULT, e);
+        logger.error("Failed to add {} for reason: {}", descriptor.getName(), e);
+      }
+    }
 
-  private void applyStringField(JsonNode savedConfig, SystemConfig.SystemConfigMapper.StringField field) {
-    if (savedConfig.get(field.getField()) != null)
-      field.setDefaultValue(savedConfig.get(field.getField()).textValue());
+    return objNode;
   }
 
-  private void applyDecimalField(JsonNode savedConfig, SystemConfig.SystemConfigMapper.DecimalField field) {
-    if (savedConfig.get(field.getField()) != null)
-      field.setDefaultValue(savedConfig.get(field.getField()).doubleValue());
-  }
+  private int getOrdinal(String key, ConfigSchema.FieldKind kind) {
+    ConfigSchema.FieldDescriptor descriptor = schema.getField(key, kind);
+    if (descriptor == null)
+      throw new IllegalArgumentException("No field " + key + " of kind " + kind + " in system configuration");
 
-  private void applyIntegerList(JsonNode savedConfig, SystemConfig.SystemConfigMapper.IntegerList field) {
-    try {
-      if (savedConfig.get(field.getField()) != null)
-        field.setDefaultValue(Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(), Integer[].class)));
-    } catch (Exception e) {
-      logger.error("Failed to apply IntegerList for reason: {}", e);
-    }
+    return descriptor.getOrdinal();
   }
 
-  private void applyOntologyList(JsonNode savedConfig, SystemConfig.SystemConfigMapper.OntologyList field) {
-    try {
-      if (savedConfig.get(field.getField()) != null) {
-        List<SystemConfig.SystemConfigMapper.Ontology> savedField = Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(),
-          SystemConfig.SystemConfigMapper.Ontology[].class));
-        field.setDefaultValue(savedField);
-      }
-    } catch (Exception e) {
-      logger.error("Failed to apply OntologyList for reason: {}", e);
-    }
+  @SuppressWarnings("unchecked")
+  private <T> T getTenantObject(String tenantId, String key, ConfigSchema.FieldKind kind) throws Exception {
+    int ordinal = getOrdinal(key, kind);
+    return (T) getTenantSnapshot(tenantId).getObject(ordinal);
   }
 
-  private void applySearchTypeList(JsonNode savedConfig, SystemConfig.SystemConfigMapper.SearchTypeList field) {
-    try {
-      if (savedConfig.get(field.getField()) != null) {
-        List<SystemConfig.SystemConfigMapper.SearchType> savedField = Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(),
-          SystemConfig.SystemConfigMapper.SearchType[].class));
-        field.setDefaultValue(savedField);
-      }
-    } catch (Exception e) {
-      logger.error("Failed to apply SearchTypeList for reason: {}", e);
-    }
+  /**
+   * Returns the field with the given key and kind, or null after counting the miss. Used by the
+   * getters taking a default value, so an unknown key falls back without an exception.
+   */
+  private ConfigSchema.FieldDescriptor findField(String key, ConfigSchema.FieldKind kind) {
+    ConfigSchema.FieldDescriptor descriptor = schema.getField(key, kind);
+    if (descriptor == null)
+      metrics.recordMiss(key, schema.lookup(key, kind));
+    return descriptor;
   }
 
-  private void applySearchTypeWeightList(JsonNode savedConfig, SystemConfig.SystemConfigMapper.SearchTypeWeightList field) {
+  @SuppressWarnings("unchecked")
+  private <T> T getTenantObject(String tenantId, String key, ConfigSchema.FieldKind kind, T defaultVal,
+                                ConfigMetrics.Operation operation) {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      if (savedConfig.get(field.getField()) != null) {
-        List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> savedField = Arrays.asList(mapper.readValue(savedConfig.get(field.getField()).toString(),
-          SystemConfig.SystemConfigMapper.SearchTypeWeightDefault[].class));
-        field.setDefaultValue(savedField);
-      }
+      ConfigSchema.FieldDescriptor descriptor = findField(key, kind);
+      if (descriptor == null)
+        return defaultVal;
+
+      return (T) getTenantSnapshot(tenantId).getObject(descriptor.getOrdinal());
     } catch (Exception e) {
-      logger.error("Failed to apply SearchTypeWeightList for reason: {}", e);
+      metrics.recordSwallowedException(operation, e);
+      return defaultVal;
+    } finally {
+      metrics.recordLatency(operation, start);
     }
   }
 
   public int getKeyAsInteger(String tenantId, String key, int defaultVal) {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      return getKeyAsInteger(tenantId, key);
+      ConfigSchema.FieldDescriptor descriptor = findField(key, ConfigSchema.FieldKind.INTEGER);
+      if (descriptor == null)
+        return defaultVal;
+
+      return getTenantSnapshot(tenantId).getInt(descriptor.getOrdinal());
     } catch (Exception e) {
+      metrics.recordSwallowedException(ConfigMetrics.Operation.GET_KEY_AS_INTEGER, e);
       return defaultVal;
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEY_AS_INTEGER, start);
     }
   }
 
   public int getKeyAsInteger(String tenantId, String key) throws Exception {
-    AtomicReference<SystemConfig.SystemConfigMapper.IntegerField> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.IntegerField) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.IntegerField) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      int ordinal = getOrdinal(key, ConfigSchema.FieldKind.INTEGER);
+      return getTenantSnapshot(tenantId).getInt(ordinal);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEY_AS_INTEGER, start);
     }
-    return ref.get().getDefaultValue();
   }
 
   public boolean getKeyAsBoolean(String tenantId, String key, boolean defaultVal) {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      return getKeyAsBoolean(tenantId, key);
+      ConfigSchema.FieldDescriptor descriptor = findField(key, ConfigSchema.FieldKind.BOOL);
+      if (descriptor == null)
+        return defaultVal;
+
+      return getTenantSnapshot(tenantId).getBoolean(descriptor.getOrdinal());
     } catch (Exception e) {
+      metrics.recordSwallowedException(ConfigMetrics.Operation.GET_KEY_AS_BOOLEAN, e);
       return defaultVal;
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEY_AS_BOOLEAN, start);
     }
   }
 
   public boolean getKeyAsBoolean(String tenantId, String key) throws Exception {
-    AtomicReference<SystemConfig.SystemConfigMapper.BoolField> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.BoolField) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.BoolField) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      int ordinal = getOrdinal(key, ConfigSchema.FieldKind.BOOL);
+      return getTenantSnapshot(tenantId).getBoolean(ordinal);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEY_AS_BOOLEAN, start);
     }
-    return ref.get().isDefaultValue();
   }
 
   public float getKeyAsFloat(String tenantId, String key, float defaultVal) {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      return getKeyAsFloat(tenantId, key);
+      ConfigSchema.FieldDescriptor descriptor = findField(key, ConfigSchema.FieldKind.DECIMAL);
+      if (descriptor == null)
+        return defaultVal;
+
+      return (float) getTenantSnapshot(tenantId).getDouble(descriptor.getOrdinal());
     } catch (Exception e) {
+      metrics.recordSwallowedException(ConfigMetrics.Operation.GET_KEY_AS_FLOAT, e);
       return defaultVal;
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEY_AS_FLOAT, start);
     }
   }
 
   public float getKeyAsFloat(String tenantId, String key) throws Exception {
-    AtomicReference<SystemConfig.SystemConfigMapper.DecimalField> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.DecimalField) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.DecimalField) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      int ordinal = getOrdinal(key, ConfigSchema.FieldKind.DECIMAL);
+      return (float) getTenantSnapshot(tenantId).getDouble(ordinal);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEY_AS_FLOAT, start);
     }
-    return (float) ref.get().getDefaultValue();
   }
 
   public String getKeyAsString(String tenantId, String key, String defaultVal) {
-    try {
-      return getKeyAsString(tenantId, key);
-    } catch (Exception e) {
-      return defaultVal;
-    }
+    return getTenantObject(tenantId, key, ConfigSchema.FieldKind.STRING, defaultVal, ConfigMetrics.Operation.GET_KEY_AS_STRING);
   }
 
   public String getKeyAsString(String tenantId, String key) throws Exception {
-    AtomicReference<SystemConfig.SystemConfigMapper.StringField> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.StringField) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.StringField) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.STRING);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_KEY_AS_STRING, start);
     }
-    return ref.get().getDefaultValue();
   }
 
   public List<SystemConfig.SystemConfigMapper.Ontology> getOntologyFilter(
     String tenantId, List<SystemConfig.SystemConfigMapper.Ontology> defaultVal) {
+    return getTenantObject(tenantId, "ontologyFilter", ConfigSchema.FieldKind.ONTOLOGY_LIST, defaultVal, ConfigMetrics.Operation.GET_ONTOLOGY_FILTER);
+  }
+
+  public List<SystemConfig.SystemConfigMapper.Ontology> getOntologyFilter(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      return getOntologyFilter(tenantId);
-    } catch (Exception e) {
-      return defaultVal;
+      String key = "ontologyFilter";
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.ONTOLOGY_LIST);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_ONTOLOGY_FILTER, start);
     }
   }
 
-  public List<SystemConfig.SystemConfigMapper.Ontology> getOntologyFilter(String tenantId) throws Exception {
-    String key = "ontologyFilter";
-    AtomicReference<SystemConfig.SystemConfigMapper.OntologyList> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.OntologyList) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.OntologyList) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+  /**
+   * Returns the ontology filter of a tenant with a precomputed EnumSet and bit mask for membership checks.
+   */
+  public OntologyFilter getOntologyFilterSet(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      String key = "ontologyFilter";
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.ONTOLOGY_LIST);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_ONTOLOGY_FILTER, start);
     }
-    return ref.get().getDefaultValue();
   }
 
   public List<SystemConfig.SystemConfigMapper.SearchType> getSearchOrder(
     String tenantId, List<SystemConfig.SystemConfigMapper.SearchType> defaultVal) {
+    return getTenantObject(tenantId, "defaultSearchOrder", ConfigSchema.FieldKind.SEARCH_TYPE_LIST, defaultVal, ConfigMetrics.Operation.GET_SEARCH_ORDER);
+  }
+
+  public List<SystemConfig.SystemConfigMapper.SearchType> getSearchOrder(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      return getSearchOrder(tenantId);
-    } catch (Exception e) {
-      return defaultVal;
+      String key = "defaultSearchOrder";
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.SEARCH_TYPE_LIST);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_SEARCH_ORDER, start);
     }
   }
 
-  public List<SystemConfig.SystemConfigMapper.SearchType> getSearchOrder(String tenantId) throws Exception {
-    String key = "defaultSearchOrder";
-    AtomicReference<SystemConfig.SystemConfigMapper.SearchTypeList> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.SearchTypeList) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.SearchTypeList) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+  /**
+   * Returns the search order of a tenant with a precomputed rank per search type.
+   */
+  public SearchOrder getSearchOrderRanks(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      String key = "defaultSearchOrder";
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.SEARCH_TYPE_LIST);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_SEARCH_ORDER, start);
     }
-    return ref.get().getDefaultValue();
   }
 
 
   public List<Integer> getSpanQuerySLOP(String tenantId, List<Integer> defaultVal) {
-    try {
-      return getSpanQuerySLOP(tenantId);
-    } catch (Exception e) {
-      return defaultVal;
-    }
+    return getTenantObject(tenantId, "spanQuerySLOP", ConfigSchema.FieldKind.INTEGER_LIST, defaultVal, ConfigMetrics.Operation.GET_SPAN_QUERY_SLOP);
   }
 
   public List<Integer> getSpanQuerySLOP(String tenantId) throws Exception {
-    String key = "spanQuerySLOP";
-    AtomicReference<SystemConfig.SystemConfigMapper.IntegerList> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.IntegerList) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.IntegerList) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      String key = "spanQuerySLOP";
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.INTEGER_LIST);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_SPAN_QUERY_SLOP, start);
     }
-    return ref.get().getDefaultValue();
   }
 
 
   public List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> getSearchTypeWeights(
     String tenantId, List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> defaultVal) {
+    return getTenantObject(tenantId, "searchTypeWeights", ConfigSchema.FieldKind.SEARCH_TYPE_WEIGHT_LIST, defaultVal, ConfigMetrics.Operation.GET_SEARCH_TYPE_WEIGHTS);
+  }
+
+  public List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> getSearchTypeWeights(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
     try {
-      return getSearchTypeWeights(tenantId);
-    } catch (Exception e) {
-      return defaultVal;
+      String key = "searchTypeWeights";
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.SEARCH_TYPE_WEIGHT_LIST);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_SEARCH_TYPE_WEIGHTS, start);
     }
   }
 
-  public List<SystemConfig.SystemConfigMapper.SearchTypeWeightDefault> getSearchTypeWeights(String tenantId) throws Exception {
-    String key = "searchTypeWeights";
-    AtomicReference<SystemConfig.SystemConfigMapper.SearchTypeWeightList> ref = new AtomicReference<>();
-    try {
-      List<SystemConfig.SystemConfigMapper> configs = getTenantConfig(tenantId);
-      configs.stream().forEach(config -> {
-        config.getFields().forEach(field -> {
-          if ((field instanceof SystemConfig.SystemConfigMapper.SearchTypeWeightList) && field.getField().equals(key))
-            ref.set((SystemConfig.SystemConfigMapper.SearchTypeWeightList) field);
-        });
-      });
-    } catch (Exception e) {
-      throw e;
+  /**
+   * Returns the search type weights of a tenant with a dense weight vector indexed by search type ordinal.
+   */
+  public SearchTypeWeights getSearchTypeWeightVector(String tenantId) throws Exception {
+    ConfigMetrics metrics = this.metrics;
+    long start = metrics.start();
+    try {
+      String key = "searchTypeWeights";
+      return getTenantObject(tenantId, key, ConfigSchema.FieldKind.SEARCH_TYPE_WEIGHT_LIST);
+    } finally {
+      metrics.recordLatency(ConfigMetrics.Operation.GET_SEARCH_TYPE_WEIGHTS, start);
     }
-    return ref.get().getDefaultValue();
   }
 
 }
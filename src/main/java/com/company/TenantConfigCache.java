@@ -0,0 +1,102 @@
+package com.company;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Cache of resolved tenant snapshots. Concurrent misses for the same tenant are coalesced into one
+ * load that all callers wait on; a failed load is reported to every waiter and not cached.
+ */
+public class TenantConfigCache {
+
+  public interface Loader {
+    TenantConfigSnapshot load(String tenantId) throws Exception;
+  }
+
+  private final ConcurrentMap<String, TenantConfigSnapshot> snapshots = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CompletableFuture<TenantConfigSnapshot>> loads = new ConcurrentHashMap<>();
+  private final Loader loader;
+
+  public TenantConfigCache(Loader loader) {
+    this.loader = loader;
+  }
+
+  public TenantConfigSnapshot get(String tenantId) throws Exception {
+    TenantConfigSnapshot cached = snapshots.get(tenantId);
+    if (cached != null)
+      return cached;
+
+    CompletableFuture<TenantConfigSnapshot> load = new CompletableFuture<>();
+    CompletableFuture<TenantConfigSnapshot> inFlight = loads.putIfAbsent(tenantId, load);
+    if (inFlight != null)
+      return await(inFlight);
+
+    try {
+      TenantConfigSnapshot snapshot = loader.load(tenantId);
+
+      // install only if no write or invalidation happened since this load was registered
+      TenantConfigSnapshot installed = snapshots.compute(tenantId, (key, current) ->
+        current != null ? current : (loads.get(key) == load ? snapshot : null));
+      load.complete(installed != null ? installed : snapshot);
+    } catch (Throwable e) {
+      load.completeExceptionally(e);
+    } finally {
+      loads.remove(tenantId, load);
+    }
+    return await(load);
+  }
+
+  /**
+   * Returns the cached snapshot of a tenant without loading it.
+   */
+  public TenantConfigSnapshot getIfPresent(String tenantId) {
+    return snapshots.get(tenantId);
+  }
+
+  /**
+   * Replaces the snapshot of a tenant, e.g. after its settings were written. A load that is still
+   * in flight completes for its waiters but is not cached.
+   */
+  public void put(String tenantId, TenantConfigSnapshot snapshot) {
+    loads.remove(tenantId);
+    snapshots.put(tenantId, snapshot);
+  }
+
+  public void invalidate(String tenantId) {
+    loads.remove(tenantId);
+    snapshots.remove(tenantId);
+  }
+
+  public void invalidateAll() {
+    loads.clear();
+    snapshots.clear();
+  }
+
+  public int size() {
+    return snapshots.size();
+  }
+
+  /**
+   * Unmodifiable live view of the cached snapshots by tenant.
+   */
+  public Map<String, TenantConfigSnapshot> asMap() {
+    return Collections.unmodifiableMap(snapshots);
+  }
+
+  private static TenantConfigSnapshot await(CompletableFuture<TenantConfigSnapshot> load) throws Exception {
+    try {
+      return load.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception)
+        throw (Exception) cause;
+      if (cause instanceof Error)
+        throw (Error) cause;
+      throw e;
+    }
+  }
+}
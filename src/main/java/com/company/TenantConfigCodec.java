@@ -0,0 +1,121 @@
+package com.company;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes stored tenant configs either as JSON or as Jackson Smile. The store only holds strings,
+ * so Smile documents are deflated and stored as {@code zsmile:<schema fingerprint>:<base64 bytes>}.
+ * Base64 adds a third, which plain Smile does not make up for on delta configs: measured on the
+ * test schema, a one-field delta is 30 chars of JSON and 55 of base64 Smile, and a delta of ten
+ * fields, lists and maps included, 429 chars of JSON, 483 of base64 Smile and 374 of deflated
+ * base64 Smile. In the Smile format a config is therefore only stored as Smile if that is shorter
+ * than its JSON, and configs whose JSON is shorter than {@link #SMILE_MIN_JSON_LENGTH} are not tried
+ * as Smile at all. Decoding accepts all forms, including the undeflated {@code smile:} documents
+ * written before, so switching formats keeps old configs readable.
+ */
+public class TenantConfigCodec {
+  static final String SMILE_PREFIX = "smile:";
+  static final String DEFLATED_SMILE_PREFIX = "zsmile:";
+  /**
+   * JSON length below which deflated Smile was not shorter on the test schema: 265 chars of JSON
+   * still took 295 as Smile, while 429 took 374.
+   */
+  static final int SMILE_MIN_JSON_LENGTH = 320;
+
+  public enum Format {
+    JSON,
+    SMILE
+  }
+
+  private final ConfigSchema schema;
+  private final TenantConfigDecoder decoder;
+  private final ObjectMapper mapper;
+  private final SmileFactory smileFactory = new SmileFactory();
+  private volatile Format format = Format.JSON;
+
+  public TenantConfigCodec(ConfigSchema schema, TenantConfigDecoder decoder, ObjectMapper mapper) {
+    this.schema = schema;
+    this.decoder = decoder;
+    this.mapper = mapper;
+  }
+
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Sets the format new configs are written in.
+   */
+  public void setFormat(Format format) {
+    this.format = format;
+  }
+
+  public String encode(ObjectNode config) throws IOException {
+    String json = mapper.writeValueAsString(config);
+    if (format == Format.JSON || json.length() < SMILE_MIN_JSON_LENGTH)
+      return json;
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    // the stream does not release a deflater it was given, so end it here to free its native memory
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    try (JsonGenerator generator = smileFactory.createGenerator(new DeflaterOutputStream(out, deflater))) {
+      mapper.writeTree(generator, config);
+    } finally {
+      deflater.end();
+    }
+    String smile = DEFLATED_SMILE_PREFIX + schema.getFingerprint() + ':' + Base64.getEncoder().withoutPadding().encodeToString(out.toByteArray());
+    return smile.length() < json.length() ? smile : json;
+  }
+
+  public void decode(String stored, TenantConfigSnapshot.Builder builder) throws IOException {
+    boolean deflated = stored.startsWith(DEFLATED_SMILE_PREFIX);
+    if (!deflated && !stored.startsWith(SMILE_PREFIX)) {
+      decoder.decode(stored, builder);
+      return;
+    }
+
+    int separator = stored.indexOf(':', deflated ? DEFLATED_SMILE_PREFIX.length() : SMILE_PREFIX.length());
+    if (separator < 0)
+      throw new IOException("Malformed Smile tenant config");
+
+    // Smile keeps field names, so documents written for another schema version still decode by name
+    InputStream in = new ByteArrayInputStream(Base64.getDecoder().decode(stored.substring(separator + 1)));
+    Inflater inflater = deflated ? new Inflater(true) : null;
+    if (deflated)
+      in = new InflaterInputStream(in, inflater);
+    try (JsonParser parser = smileFactory.createParser(in)) {
+      decoder.decode(parser, builder);
+    } finally {
+      if (inflater != null)
+        inflater.end();
+    }
+  }
+
+  /**
+   * Returns whether a stored config is in the current format and, for Smile, was written for the
+   * current schema. Configs that are not should be rewritten. In the Smile format, a JSON config is
+   * current if it is too short to be tried as Smile; longer ones are re-encoded to tell.
+   */
+  public boolean isCurrent(String stored) {
+    if (stored.startsWith(DEFLATED_SMILE_PREFIX))
+      return format == Format.SMILE && stored.startsWith(schema.getFingerprint() + ':', DEFLATED_SMILE_PREFIX.length());
+    if (stored.startsWith(SMILE_PREFIX))
+      return false;
+
+    return format == Format.JSON || stored.length() < SMILE_MIN_JSON_LENGTH;
+  }
+}
@@ -0,0 +1,68 @@
+package com.company;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Single-pass decoder for stored tenant settings. Reads the JSON token stream straight into a
+ * snapshot builder, resolving field names through the compiled schema; no JsonNode tree is built
+ * and list values are not re-serialized to be parsed a second time.
+ */
+public class TenantConfigDecoder {
+  private static final Logger logger = LoggerFactory.getLogger(TenantConfigDecoder.class);
+
+  /**
+   * Name of the field holding the version of a stored tenant config.
+   */
+  public static final String VERSION_FIELD = "_version";
+
+  private final ConfigSchema schema;
+  private final ObjectMapper mapper;
+
+  public TenantConfigDecoder(ConfigSchema schema, ObjectMapper mapper) {
+    this.schema = schema;
+    this.mapper = mapper;
+  }
+
+  /**
+   * Copies the fields present in a JSON document into a builder. Unknown fields are skipped, and a
+   * field with an invalid value is logged and left unchanged.
+   */
+  public void decode(String json, TenantConfigSnapshot.Builder builder) throws IOException {
+    try (JsonParser parser = mapper.getFactory().createParser(json)) {
+      decode(parser, builder);
+    }
+  }
+
+  public void decode(JsonParser parser, TenantConfigSnapshot.Builder builder) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT)
+      throw new IOException("Tenant config is not a JSON object");
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      ConfigSchema.FieldDescriptor descriptor = schema.getField(name);
+      parser.nextToken();
+
+      if (VERSION_FIELD.equals(name)) {
+        builder.setVersion(parser.getValueAsLong());
+        continue;
+      }
+
+      if (descriptor == null) {
+        parser.skipChildren();
+        continue;
+      }
+
+      try {
+        descriptor.getType().decode(parser, builder, descriptor.getOrdinal());
+      } catch (IllegalArgumentException e) {
+        logger.error("Failed to decode {} for reason: {}", descriptor.getName(), e.getMessage());
+      }
+    }
+  }
+}
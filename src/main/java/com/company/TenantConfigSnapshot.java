@@ -0,0 +1,347 @@
+package com.company;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable, resolved config of one tenant.
+ * <p>
+ * All snapshots of a schema share one default layer, which holds the raw bits of integer, long,
+ * decimal and boolean defaults in a primitive array and all other defaults as unmodifiable
+ * objects, indexed by field ordinal. Values take the snapshot form of their {@link FieldType}, e.g.
+ * ontology filters, search orders and search type weights are kept in their precomputed forms
+ * {@link OntologyFilter}, {@link SearchOrder} and {@link SearchTypeWeights}. A tenant
+ * snapshot only adds the fields the tenant changed: a bit set of overridden ordinals plus dense
+ * arrays of the overriding values, addressed by the rank of the ordinal in that bit set. Reading a
+ * value does not allocate.
+ * <p>
+ * Overriding values are interned per default layer (see {@link ValueInterner}), so tenants that
+ * override a field with equal values share one instance.
+ */
+public final class TenantConfigSnapshot {
+  private static final long[] NO_BITS = new long[0];
+  private static final int[] NO_RANKS = new int[0];
+  private static final Object[] NO_OBJECTS = new Object[0];
+
+  private final DefaultLayer defaults;
+
+  // version of the stored tenant config this snapshot was built from, 0 if nothing was stored
+  private final long version;
+
+  // overridden ordinals, trimmed after the last non-empty word
+  private final long[] overridden;
+
+  // number of overridden primitive/object fields before each word of the bit set
+  private final int[] primitiveRanks;
+  private final int[] objectRanks;
+
+  // raw bits of overridden integer, long, decimal and boolean values, and the other overridden values
+  private final long[] primitives;
+  private final Object[] objects;
+
+  private TenantConfigSnapshot(DefaultLayer defaults, long version, long[] overridden, int[] primitiveRanks,
+                               int[] objectRanks, long[] primitives, Object[] objects) {
+    this.defaults = defaults;
+    this.version = version;
+    this.overridden = overridden;
+    this.primitiveRanks = primitiveRanks;
+    this.objectRanks = objectRanks;
+    this.primitives = primitives;
+    this.objects = objects;
+  }
+
+  /**
+   * Creates the snapshot holding only the defaults of the schema. Tenant snapshots are built from it
+   * with {@link #toBuilder()} and share its default layer.
+   */
+  public static TenantConfigSnapshot defaults(ConfigSchema schema) {
+    return new DefaultLayer(schema).snapshot;
+  }
+
+  public ConfigSchema getSchema() {
+    return defaults.schema;
+  }
+
+  public int getInt(int ordinal) {
+    int slot = slot(ordinal, defaults.primitiveFields, primitiveRanks);
+    return (int) (slot < 0 ? defaults.bits[ordinal] : primitives[slot]);
+  }
+
+  public long getLong(int ordinal) {
+    int slot = slot(ordinal, defaults.primitiveFields, primitiveRanks);
+    return slot < 0 ? defaults.bits[ordinal] : primitives[slot];
+  }
+
+  public double getDouble(int ordinal) {
+    int slot = slot(ordinal, defaults.primitiveFields, primitiveRanks);
+    return Double.longBitsToDouble(slot < 0 ? defaults.bits[ordinal] : primitives[slot]);
+  }
+
+  public boolean getBoolean(int ordinal) {
+    int slot = slot(ordinal, defaults.primitiveFields, primitiveRanks);
+    return (slot < 0 ? defaults.bits[ordinal] : primitives[slot]) != 0;
+  }
+
+  /**
+   * Returns the value of a field that is not kept as bits, e.g. a string, duration, list or map.
+   */
+  public Object getObject(int ordinal) {
+    int slot = slot(ordinal, defaults.objectFields, objectRanks);
+    return slot < 0 ? defaults.objects[ordinal] : objects[slot];
+  }
+
+  /**
+   * Returns whether the tenant has a value for the field that differs from the default.
+   */
+  public boolean isOverridden(int ordinal) {
+    int word = ordinal >>> 6;
+    return word < overridden.length && (overridden[word] & (1L << ordinal)) != 0;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public int getOverrideCount() {
+    return primitives.length + objects.length;
+  }
+
+  /**
+   * Estimated heap size of this snapshot without the values it refers to, see {@link HeapFootprint};
+   * 0 for the snapshot of the default layer, which all tenants without overrides share.
+   */
+  long estimateStructureBytes() {
+    if (this == defaults.snapshot)
+      return 0;
+
+    return HeapFootprint.object(6, 8) + arrayBytes(overridden.length, 8) + arrayBytes(primitiveRanks.length, 4)
+      + arrayBytes(objectRanks.length, 4) + arrayBytes(primitives.length, 8)
+      + arrayBytes(objects.length, HeapFootprint.REFERENCE);
+  }
+
+  /**
+   * Estimated heap size of the default layer, including its default values and its snapshot.
+   */
+  long estimateDefaultLayerBytes() {
+    long size = HeapFootprint.object(7, 0) + HeapFootprint.array(defaults.bits.length, 8)
+      + HeapFootprint.array(defaults.objects.length, HeapFootprint.REFERENCE)
+      + 2 * HeapFootprint.array(defaults.primitiveFields.length, 8) + HeapFootprint.object(6, 8);
+    for (Object value : defaults.objects)
+      size += HeapFootprint.sizeOf(value);
+    return size;
+  }
+
+  /**
+   * Number of distinct overriding values currently shared through the interner of the default layer.
+   */
+  int getCanonicalValueCount() {
+    return defaults.values.size();
+  }
+
+  // empty arrays are the shared constants
+  private static long arrayBytes(int length, int elementBytes) {
+    return length == 0 ? 0 : HeapFootprint.array(length, elementBytes);
+  }
+
+  private int slot(int ordinal, long[] kindFields, int[] ranks) {
+    int word = ordinal >>> 6;
+    if (word >= overridden.length)
+      return -1;
+
+    long bit = 1L << ordinal;
+    if ((overridden[word] & bit) == 0)
+      return -1;
+
+    return ranks[word] + Long.bitCount(overridden[word] & kindFields[word] & (bit - 1));
+  }
+
+  /**
+   * Returns a builder that starts out with the values of this snapshot.
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder(defaults);
+    builder.setVersion(version);
+    for (ConfigSchema.FieldDescriptor descriptor : defaults.schema.getFields()) {
+      int ordinal = descriptor.getOrdinal();
+      if (!isOverridden(ordinal))
+        continue;
+
+      if (defaults.isPrimitive(ordinal))
+        builder.setBits(ordinal, primitives[slot(ordinal, defaults.primitiveFields, primitiveRanks)]);
+      else
+        builder.setObject(ordinal, objects[slot(ordinal, defaults.objectFields, objectRanks)]);
+    }
+    return builder;
+  }
+
+  /**
+   * Writes the values of this snapshot into a config tree with the same shape as the schema.
+   */
+  public void applyTo(List<SystemConfig.SystemConfigMapper> configs) {
+    for (ConfigSchema.FieldDescriptor descriptor : defaults.schema.getFields())
+      descriptor.getType().applyTo(this, descriptor.getOrdinal(), descriptor.locate(configs));
+  }
+
+  /**
+   * Collects the values of one tenant. Values equal to the default are not kept as overrides.
+   */
+  public static final class Builder {
+    private final DefaultLayer defaults;
+    private long version;
+    private final long[] set;
+    private final long[] primitives;
+    private final Object[] objects;
+
+    private Builder(DefaultLayer defaults) {
+      int size = defaults.schema.size();
+      this.defaults = defaults;
+      this.set = new long[(size + 63) >>> 6];
+      this.primitives = new long[size];
+      this.objects = new Object[size];
+    }
+
+    public ConfigSchema getSchema() {
+      return defaults.schema;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    public Builder setVersion(long version) {
+      this.version = version;
+      return this;
+    }
+
+    public Builder setInt(int ordinal, int value) {
+      return setBits(ordinal, value);
+    }
+
+    public Builder setLong(int ordinal, long value) {
+      return setBits(ordinal, value);
+    }
+
+    public Builder setDouble(int ordinal, double value) {
+      return setBits(ordinal, Double.doubleToRawLongBits(value));
+    }
+
+    public Builder setBoolean(int ordinal, boolean value) {
+      return setBits(ordinal, value ? 1 : 0);
+    }
+
+    /**
+     * Sets the value of a field that is not kept as bits. The value is converted into its immutable
+     * snapshot form, see {@link FieldType#freeze}.
+     */
+    public Builder setObject(int ordinal, Object value) {
+      ConfigSchema.FieldDescriptor descriptor = defaults.schema.getFields().get(ordinal);
+      objects[ordinal] = descriptor.getType().freeze(descriptor.getDefinition(), value);
+      set[ordinal >>> 6] |= 1L << ordinal;
+      return this;
+    }
+
+    private Builder setBits(int ordinal, long bits) {
+      primitives[ordinal] = bits;
+      set[ordinal >>> 6] |= 1L << ordinal;
+      return this;
+    }
+
+    public TenantConfigSnapshot build() {
+      long[] overridden = new long[set.length];
+      int primitiveCount = 0;
+      int objectCount = 0;
+
+      for (int ordinal = 0; ordinal < primitives.length; ordinal++) {
+        if ((set[ordinal >>> 6] & (1L << ordinal)) == 0)
+          continue;
+
+        if (defaults.isPrimitive(ordinal)) {
+          if (primitives[ordinal] == defaults.bits[ordinal])
+            continue;
+          primitiveCount++;
+        } else {
+          if (Objects.equals(objects[ordinal], defaults.objects[ordinal]))
+            continue;
+          objectCount++;
+        }
+        overridden[ordinal >>> 6] |= 1L << ordinal;
+      }
+
+      int words = overridden.length;
+      while (words > 0 && overridden[words - 1] == 0)
+        words--;
+
+      if (words == 0)
+        return version == 0 ? defaults.snapshot : new TenantConfigSnapshot(defaults, version, NO_BITS, NO_RANKS, NO_RANKS, NO_BITS, NO_OBJECTS);
+
+      long[] packedPrimitives = new long[primitiveCount];
+      Object[] packedObjects = new Object[objectCount];
+      int[] primitiveRanks = new int[words];
+      int[] objectRanks = new int[words];
+      int p = 0;
+      int o = 0;
+
+      for (int word = 0; word < words; word++) {
+        primitiveRanks[word] = p;
+        objectRanks[word] = o;
+
+        long bits = overridden[word];
+        while (bits != 0) {
+          int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+          if (defaults.isPrimitive(ordinal))
+            packedPrimitives[p++] = primitives[ordinal];
+          else
+            packedObjects[o++] = defaults.values.intern(objects[ordinal]);
+          bits &= bits - 1;
+        }
+      }
+
+      return new TenantConfigSnapshot(defaults, version, Arrays.copyOf(overridden, words), primitiveRanks, objectRanks,
+        packedPrimitives, packedObjects);
+    }
+  }
+
+  private static final class DefaultLayer {
+    private final ConfigSchema schema;
+    private final long[] bits;
+    private final Object[] objects;
+
+    // ordinals of fields kept as bits, and of all other fields
+    private final long[] primitiveFields;
+    private final long[] objectFields;
+
+    // canonical overriding values, shared by the snapshots of all tenants
+    private final ValueInterner values = new ValueInterner();
+
+    // the snapshot without overrides, shared by all tenants that use the defaults only
+    private final TenantConfigSnapshot snapshot;
+
+    private DefaultLayer(ConfigSchema schema) {
+      int size = schema.size();
+      this.schema = schema;
+      this.bits = new long[size];
+      this.objects = new Object[size];
+      this.primitiveFields = new long[(size + 63) >>> 6];
+      this.objectFields = new long[(size + 63) >>> 6];
+
+      for (ConfigSchema.FieldDescriptor descriptor : schema.getFields()) {
+        int ordinal = descriptor.getOrdinal();
+        FieldType type = descriptor.getType();
+        if (type.isPrimitive()) {
+          bits[ordinal] = type.toBits(type.getValue(descriptor.getDefinition()));
+          primitiveFields[ordinal >>> 6] |= 1L << ordinal;
+        } else {
+          objects[ordinal] = type.getDefault(descriptor.getDefinition());
+          objectFields[ordinal >>> 6] |= 1L << ordinal;
+        }
+      }
+
+      this.snapshot = new TenantConfigSnapshot(this, 0, NO_BITS, NO_RANKS, NO_RANKS, NO_BITS, NO_OBJECTS);
+    }
+
+    private boolean isPrimitive(int ordinal) {
+      return (primitiveFields[ordinal >>> 6] & (1L << ordinal)) != 0;
+    }
+  }
+}
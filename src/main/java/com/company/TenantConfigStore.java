@@ -0,0 +1,35 @@
+package com.company;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Storage of per-tenant config values.
+ */
+public interface TenantConfigStore {
+
+  Optional<String> get(String tenantId, String key) throws Exception;
+
+  void put(String tenantId, String key, String value) throws Exception;
+
+  /**
+   * Stores a value only if the current value equals the expected one, where null stands for no
+   * value. Returns whether the value was stored.
+   */
+  boolean compareAndSet(String tenantId, String key, String expected, String value) throws Exception;
+
+  /**
+   * Removes a value. Optional; stores that cannot remove values throw UnsupportedOperationException.
+   */
+  default void remove(String tenantId, String key) throws Exception {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support removing values");
+  }
+
+  /**
+   * Returns the tenants that have a value for the key. Optional; stores that cannot enumerate their
+   * tenants throw UnsupportedOperationException.
+   */
+  default Set<String> getTenantIds(String key) throws Exception {
+    throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support listing tenants");
+  }
+}
@@ -0,0 +1,204 @@
+package com.company;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Preloads the resolved configs of many tenants in parallel, so the first request of a tenant
+ * after a deploy does not pay for loading its config.
+ * <p>
+ * This is a library API: SystemConfigUtil does not warm any tenants by itself. Applications call it
+ * at startup, with the tenants they expect or with all tenants of the store, e.g. once
+ * {@link SystemConfigUtil#initializeAsync()} completed. Tenants whose stored config cannot be read
+ * or decoded are reported as failures and are not cached.
+ */
+public class TenantConfigWarmer {
+  private static final Logger logger = LoggerFactory.getLogger(TenantConfigWarmer.class);
+
+  private final SystemConfigUtil configUtil;
+  private final int parallelism;
+
+  /**
+   * @param parallelism number of tenants loaded at the same time; loading is mostly store I/O,
+   *                    so this may well exceed the number of cores
+   */
+  public TenantConfigWarmer(SystemConfigUtil configUtil, int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("parallelism must be at least 1");
+
+    this.configUtil = configUtil;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Starts warming every tenant with a stored config. Throws UnsupportedOperationException if the
+   * store cannot list its tenants; the tenants to warm must then be given explicitly.
+   */
+  public WarmupReport warmUpStoredTenants() throws Exception {
+    return warmUp(configUtil.getStoredTenantIds());
+  }
+
+  /**
+   * Starts warming the given tenants in the background. The returned report fills in as tenants
+   * are loaded; {@link WarmupReport#getCompletion()} completes once all of them are done.
+   */
+  public WarmupReport warmUp(Collection<String> tenantIds) {
+    List<String> tenants = new ArrayList<>(tenantIds);
+    WarmupReport report = new WarmupReport(tenants.size());
+    if (tenants.isEmpty()) {
+      report.complete();
+      return report;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tenants.size()), new WarmerThreadFactory());
+    List<CompletableFuture<Void>> loads = new ArrayList<>(tenants.size());
+    for (String tenantId : tenants)
+      loads.add(CompletableFuture.runAsync(() -> load(tenantId, report), executor));
+    executor.shutdown();
+
+    CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, e) -> {
+      report.complete();
+      logger.info("Warmed {} tenant configs in {} ms, {} failed", report.getLoadedCount(),
+        TimeUnit.NANOSECONDS.toMillis(report.getElapsedNanos()), report.getFailures().size());
+    });
+    return report;
+  }
+
+  /**
+   * Warms the given tenants and blocks until all of them are loaded or the timeout elapses. Loading
+   * carries on in the background after a timeout; the returned report is then incomplete.
+   */
+  public WarmupReport warmUp(Collection<String> tenantIds, long timeout, TimeUnit unit) throws InterruptedException {
+    WarmupReport report = warmUp(tenantIds);
+    if (!report.await(timeout, unit))
+      logger.warn("Tenant config warm-up did not finish within {} {}, {} of {} tenants done", timeout, unit,
+        report.getDoneCount(), report.getTenantCount());
+    return report;
+  }
+
+  private void load(String tenantId, WarmupReport report) {
+    long start = System.nanoTime();
+    try {
+      configUtil.resolveTenantSnapshot(tenantId);
+      report.loaded(tenantId, System.nanoTime() - start);
+    } catch (Exception e) {
+      logger.error("Failed to warm config of tenant {} for reason: {}", tenantId, e);
+      report.failed(tenantId, e);
+    }
+  }
+
+  /**
+   * Progress and result of one warm-up: load latency per tenant, failures and total time.
+   */
+  public static class WarmupReport {
+    private final int tenantCount;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+    private final Map<String, Long> latencies = new ConcurrentHashMap<>();
+    private final Map<String, Exception> failures = new ConcurrentHashMap<>();
+    private final AtomicInteger done = new AtomicInteger();
+    private final CompletableFuture<WarmupReport> completion = new CompletableFuture<>();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    WarmupReport(int tenantCount) {
+      this.tenantCount = tenantCount;
+    }
+
+    private void loaded(String tenantId, long nanos) {
+      latencies.put(tenantId, nanos);
+      progress();
+    }
+
+    private void failed(String tenantId, Exception e) {
+      failures.put(tenantId, e);
+      progress();
+    }
+
+    private void progress() {
+      int count = done.incrementAndGet();
+      int step = Math.max(1, tenantCount / 10);
+      if (count % step == 0 && count < tenantCount)
+        logger.info("Warmed {} of {} tenant configs", count, tenantCount);
+    }
+
+    private void complete() {
+      endNanos = System.nanoTime();
+      completion.complete(this);
+      finished.countDown();
+    }
+
+    /**
+     * Waits until every tenant was loaded or failed, or the timeout elapses. Returns whether the
+     * warm-up is complete.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+      return finished.await(timeout, unit);
+    }
+
+    public int getTenantCount() {
+      return tenantCount;
+    }
+
+    public int getDoneCount() {
+      return done.get();
+    }
+
+    public int getLoadedCount() {
+      return latencies.size();
+    }
+
+    public boolean isComplete() {
+      return completion.isDone();
+    }
+
+    /**
+     * Completes with this report once every tenant was loaded or failed.
+     */
+    public CompletableFuture<WarmupReport> getCompletion() {
+      return completion;
+    }
+
+    /**
+     * Load latency in nanoseconds per loaded tenant.
+     */
+    public Map<String, Long> getLatencies() {
+      return Collections.unmodifiableMap(latencies);
+    }
+
+    public Map<String, Exception> getFailures() {
+      return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Time from the start of the warm-up until it completed, or until now while it is running.
+     */
+    public long getElapsedNanos() {
+      return (isComplete() ? endNanos : System.nanoTime()) - startNanos;
+    }
+  }
+
+  private static class WarmerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "tenant-config-warmer-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
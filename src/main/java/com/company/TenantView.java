@@ -0,0 +1,131 @@
+package com.company;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed, read-only view of one resolved tenant config. All reads through a view see the same
+ * snapshot, so a request can read many settings from a single store read.
+ */
+public class TenantView {
+  private final String tenantId;
+  private final TenantConfigSnapshot snapshot;
+
+  public TenantView(String tenantId, TenantConfigSnapshot snapshot) {
+    this.tenantId = tenantId;
+    this.snapshot = snapshot;
+  }
+
+  public String getTenantId() {
+    return tenantId;
+  }
+
+  public TenantConfigSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Returns the value of any field, boxed, or null if the schema has no such field.
+   */
+  public Object get(String key) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key);
+    if (descriptor == null)
+      return null;
+
+    return descriptor.getType().get(snapshot, descriptor.getOrdinal());
+  }
+
+  public int getInt(String key) {
+    return snapshot.getInt(ordinal(key, ConfigSchema.FieldKind.INTEGER));
+  }
+
+  public int getInt(String key, int defaultVal) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key, ConfigSchema.FieldKind.INTEGER);
+    return descriptor == null ? defaultVal : snapshot.getInt(descriptor.getOrdinal());
+  }
+
+  public long getLong(String key) {
+    return snapshot.getLong(ordinal(key, ConfigSchema.FieldKind.LONG));
+  }
+
+  public long getLong(String key, long defaultVal) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key, ConfigSchema.FieldKind.LONG);
+    return descriptor == null ? defaultVal : snapshot.getLong(descriptor.getOrdinal());
+  }
+
+  public boolean getBoolean(String key) {
+    return snapshot.getBoolean(ordinal(key, ConfigSchema.FieldKind.BOOL));
+  }
+
+  public boolean getBoolean(String key, boolean defaultVal) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key, ConfigSchema.FieldKind.BOOL);
+    return descriptor == null ? defaultVal : snapshot.getBoolean(descriptor.getOrdinal());
+  }
+
+  public double getDouble(String key) {
+    return snapshot.getDouble(ordinal(key, ConfigSchema.FieldKind.DECIMAL));
+  }
+
+  public double getDouble(String key, double defaultVal) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key, ConfigSchema.FieldKind.DECIMAL);
+    return descriptor == null ? defaultVal : snapshot.getDouble(descriptor.getOrdinal());
+  }
+
+  public String getString(String key) {
+    return (String) snapshot.getObject(ordinal(key, ConfigSchema.FieldKind.STRING));
+  }
+
+  public String getString(String key, String defaultVal) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key, ConfigSchema.FieldKind.STRING);
+    return descriptor == null ? defaultVal : (String) snapshot.getObject(descriptor.getOrdinal());
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<Integer> getIntegerList(String key) {
+    return (List<Integer>) snapshot.getObject(ordinal(key, ConfigSchema.FieldKind.INTEGER_LIST));
+  }
+
+  @SuppressWarnings("unchecked")
+  public List<String> getStringList(String key) {
+    return (List<String>) snapshot.getObject(ordinal(key, ConfigSchema.FieldKind.STRING_LIST));
+  }
+
+  public Duration getDuration(String key) {
+    return (Duration) snapshot.getObject(ordinal(key, ConfigSchema.FieldKind.DURATION));
+  }
+
+  public Duration getDuration(String key, Duration defaultVal) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key, ConfigSchema.FieldKind.DURATION);
+    return descriptor == null ? defaultVal : (Duration) snapshot.getObject(descriptor.getOrdinal());
+  }
+
+  @SuppressWarnings("unchecked")
+  public Map<String, String> getStringMap(String key) {
+    return (Map<String, String>) snapshot.getObject(ordinal(key, ConfigSchema.FieldKind.STRING_MAP));
+  }
+
+  public OntologyFilter getOntologyFilter() {
+    return (OntologyFilter) snapshot.getObject(ordinal("ontologyFilter", ConfigSchema.FieldKind.ONTOLOGY_LIST));
+  }
+
+  public SearchOrder getSearchOrder() {
+    return (SearchOrder) snapshot.getObject(ordinal("defaultSearchOrder", ConfigSchema.FieldKind.SEARCH_TYPE_LIST));
+  }
+
+  public List<Integer> getSpanQuerySLOP() {
+    return getIntegerList("spanQuerySLOP");
+  }
+
+  public SearchTypeWeights getSearchTypeWeights() {
+    return (SearchTypeWeights) snapshot.getObject(ordinal("searchTypeWeights", ConfigSchema.FieldKind.SEARCH_TYPE_WEIGHT_LIST));
+  }
+
+  private int ordinal(String key, ConfigSchema.FieldKind kind) {
+    ConfigSchema.FieldDescriptor descriptor = snapshot.getSchema().getField(key, kind);
+    if (descriptor == null)
+      throw new IllegalArgumentException("No field " + key + " of kind " + kind + " in system configuration");
+
+    return descriptor.getOrdinal();
+  }
+}
@@ -0,0 +1,149 @@
+package com.company;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tenant config store that keeps a local copy of a remote store, e.g. a
+ * {@link MappedFileTenantConfigStore} in front of {@link DynamicPropertiesStore}, so most reads do
+ * not need the remote store and reads still work while it is unavailable.
+ * <p>
+ * A local copy is served for a time to live after it was last read from or written to the remote
+ * store; after that, and after a restart, the next read goes to the remote store again, so writes
+ * of other nodes show up within the time to live. If the remote store fails, the local copy is
+ * served however old it is. Writes go to the remote store first and are copied locally when they
+ * succeed. A failed compareAndSet refreshes the local copy from the remote store, so the retry of a
+ * versioned write sees the value that beat it. Failures of the local store are logged and fall back
+ * to the remote store.
+ * <p>
+ * Values cannot be removed, as not every remote store supports it.
+ */
+public class TieredTenantConfigStore implements TenantConfigStore {
+  private static final Logger logger = LoggerFactory.getLogger(TieredTenantConfigStore.class);
+
+  public static final long DEFAULT_TTL_MILLIS = 30000;
+
+  private final TenantConfigStore local;
+  private final TenantConfigStore remote;
+  private final long ttlNanos;
+
+  // when each local copy was last known to match the remote store, by tenant and key
+  private final ConcurrentMap<String, Long> verified = new ConcurrentHashMap<>();
+
+  public TieredTenantConfigStore(TenantConfigStore local, TenantConfigStore remote) {
+    this(local, remote, DEFAULT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  public TieredTenantConfigStore(TenantConfigStore local, TenantConfigStore remote, long ttl, TimeUnit unit) {
+    this.local = local;
+    this.remote = remote;
+    this.ttlNanos = unit.toNanos(ttl);
+  }
+
+  @Override
+  public Optional<String> get(String tenantId, String key) throws Exception {
+    Optional<String> value = getLocal(tenantId, key);
+    Long verifiedAt = verified.get(verifiedKey(tenantId, key));
+    if (value.isPresent() && verifiedAt != null && System.nanoTime() - verifiedAt < ttlNanos)
+      return value;
+
+    Optional<String> remoteValue;
+    try {
+      remoteValue = remote.get(tenantId, key);
+    } catch (Exception e) {
+      if (!value.isPresent())
+        throw e;
+      logger.warn("Failed to read {} of tenant {} from the remote store, serving the local copy, for reason: {}",
+        key, tenantId, e);
+      return value;
+    }
+
+    update(tenantId, key, value, remoteValue);
+    return remoteValue;
+  }
+
+  @Override
+  public void put(String tenantId, String key, String value) throws Exception {
+    remote.put(tenantId, key, value);
+    putLocal(tenantId, key, value);
+  }
+
+  @Override
+  public boolean compareAndSet(String tenantId, String key, String expected, String value) throws Exception {
+    if (remote.compareAndSet(tenantId, key, expected, value)) {
+      putLocal(tenantId, key, value);
+      return true;
+    }
+
+    refresh(tenantId, key);
+    return false;
+  }
+
+  /**
+   * Lists the tenants of the remote store, which holds the values of all nodes.
+   */
+  @Override
+  public Set<String> getTenantIds(String key) throws Exception {
+    return remote.getTenantIds(key);
+  }
+
+  /**
+   * Replaces the local copy of a value with the current remote value.
+   */
+  public void refresh(String tenantId, String key) throws Exception {
+    Optional<String> remoteValue = remote.get(tenantId, key);
+    update(tenantId, key, getLocal(tenantId, key), remoteValue);
+  }
+
+  private Optional<String> getLocal(String tenantId, String key) {
+    try {
+      return local.get(tenantId, key);
+    } catch (Exception e) {
+      logger.warn("Failed to read {} of tenant {} from the local store for reason: {}", key, tenantId, e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Brings the local copy in line with the remote value. An unchanged copy is only marked verified,
+   * so a local store that appends every write does not grow with each expired read.
+   */
+  private void update(String tenantId, String key, Optional<String> localValue, Optional<String> remoteValue) {
+    if (remoteValue.isPresent()) {
+      if (remoteValue.equals(localValue))
+        verified.put(verifiedKey(tenantId, key), System.nanoTime());
+      else
+        putLocal(tenantId, key, remoteValue.get());
+      return;
+    }
+
+    verified.remove(verifiedKey(tenantId, key));
+    if (!localValue.isPresent())
+      return;
+    try {
+      local.remove(tenantId, key);
+    } catch (Exception e) {
+      logger.warn("Failed to remove {} of tenant {} from the local store for reason: {}", key, tenantId, e);
+    }
+  }
+
+  private void putLocal(String tenantId, String key, String value) {
+    try {
+      local.put(tenantId, key, value);
+      verified.put(verifiedKey(tenantId, key), System.nanoTime());
+    } catch (Exception e) {
+      verified.remove(verifiedKey(tenantId, key));
+      logger.warn("Failed to write {} of tenant {} to the local store for reason: {}", key, tenantId, e);
+    }
+  }
+
+  private static String verifiedKey(String tenantId, String key) {
+    return tenantId + '\u0000' + key;
+  }
+}
@@ -0,0 +1,52 @@
+package com.company;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Weak canonicalizing map for immutable values, such as the snapshot forms of tenant overrides:
+ * returns one shared instance for all values that are equal and of the same class, so the same
+ * override set by many tenants takes the memory of one. A canonical instance is dropped by the
+ * garbage collector once nothing else refers to it.
+ * <p>
+ * Values are grouped by class, so e.g. an empty list of integers is never replaced by an empty
+ * {@link OntologyFilter}. Callers must not modify interned values.
+ */
+public final class ValueInterner {
+  private final ConcurrentHashMap<Class<?>, Map<Object, WeakReference<Object>>> values = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the canonical instance equal to the value, which becomes canonical if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T intern(T value) {
+    if (value == null)
+      return null;
+
+    Map<Object, WeakReference<Object>> canonicals = values.computeIfAbsent(value.getClass(), type -> new WeakHashMap<>());
+    synchronized (canonicals) {
+      WeakReference<Object> reference = canonicals.get(value);
+      Object canonical = reference == null ? null : reference.get();
+      if (canonical != null)
+        return (T) canonical;
+
+      canonicals.put(value, new WeakReference<>(value));
+      return value;
+    }
+  }
+
+  /**
+   * Number of canonical instances that have not been collected yet.
+   */
+  public int size() {
+    int size = 0;
+    for (Map<Object, WeakReference<Object>> canonicals : values.values()) {
+      synchronized (canonicals) {
+        size += canonicals.size();
+      }
+    }
+    return size;
+  }
+}
@@ -0,0 +1,298 @@
+package com.company;
+
+import org.apache.commons.configuration2.CombinedConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.XMLConfiguration;
+import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.apache.commons.configuration2.io.FileLocatorUtils;
+import org.apache.commons.configuration2.tree.ImmutableNode;
+import org.apache.commons.configuration2.tree.OverrideCombiner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Layered properties files, e.g. those of configDef.xml, combined into a {@link CompiledConfiguration}
+ * that is rebuilt when one of the files changes.
+ * <p>
+ * Changes are detected with a WatchService on the directories of the files, not by polling. Events
+ * are debounced: a reload starts once no event arrived for the debounce delay, so an editor saving a
+ * file in several steps causes one reload. A reload parses only the layers that changed, combines
+ * them with the unchanged layers on the reload thread and publishes the result with a single
+ * reference swap. Readers never block and always see a complete snapshot. A layer that fails to
+ * parse keeps its previous contents; a layer whose file is removed becomes empty. Layers declared
+ * with the mappedProperties tag are loaded with {@link MappedPropertiesConfiguration}.
+ */
+public class WatchedConfiguration implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(WatchedConfiguration.class);
+
+  private final String[] names;
+  private final Path[] paths;
+  private final BitSet mapped;
+  private final long debounceMillis;
+
+  // parsed layers, only used on the reload thread once the constructor returned
+  private final Configuration[] layers;
+
+  private final AtomicReference<CompiledConfiguration> current = new AtomicReference<>();
+  private final ScheduledExecutorService reloader;
+  private final BitSet changed = new BitSet();
+  private ScheduledFuture<?> pendingReload;
+  private volatile long reloadCount;
+
+  private WatchService watchService;
+  private Thread watcher;
+
+  /**
+   * Loads the layers, highest priority first, keyed by name.
+   */
+  public WatchedConfiguration(Map<String, Path> layers, long debounceMillis) throws ConfigurationException {
+    this(layers, new BitSet(), debounceMillis);
+  }
+
+  /**
+   * Loads the layers, highest priority first, keyed by name; the layers whose positions are set in
+   * mapped are loaded as MappedPropertiesConfigurations.
+   */
+  public WatchedConfiguration(Map<String, Path> layers, BitSet mapped, long debounceMillis) throws ConfigurationException {
+    this.names = layers.keySet().toArray(new String[0]);
+    this.paths = new Path[names.length];
+    this.mapped = (BitSet) mapped.clone();
+    this.layers = new Configuration[names.length];
+    this.debounceMillis = debounceMillis;
+
+    int i = 0;
+    for (Path path : layers.values()) {
+      paths[i] = path.toAbsolutePath().normalize();
+      this.layers[i] = load(paths[i], this.mapped.get(i));
+      i++;
+    }
+    current.set(combine());
+
+    reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "config-reload");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Reads the properties and mappedProperties layers of a configuration definition such as
+   * configDef.xml, in their order. The definition and its layers are located the way
+   * {@link Configurations#combined(String)} locates them: in the file system, relative to the
+   * working directory, the home directory or the definition, or on the classpath. Both have to be
+   * files, as resources inside a jar cannot be watched. A layer that cannot be located is resolved
+   * against the directory of the definition and starts out empty.
+   * <p>
+   * Only the layers are taken from the definition: its combiner, config-optional and header
+   * settings are ignored, and the layers are always combined with an {@link OverrideCombiner}.
+   */
+  public static WatchedConfiguration fromDefinition(String fileName, long debounceMillis) throws ConfigurationException {
+    return fromDefinition(toPath(FileLocatorUtils.locateOrThrow(FileLocatorUtils.fileLocator().fileName(fileName).create())),
+      debounceMillis);
+  }
+
+  /**
+   * Reads the layers of the configuration definition in the given file, see {@link #fromDefinition(String, long)}.
+   */
+  public static WatchedConfiguration fromDefinition(Path definition, long debounceMillis) throws ConfigurationException {
+    XMLConfiguration xml = new Configurations().xml(definition.toFile());
+    Path directory = definition.toAbsolutePath().getParent();
+    String basePath = definition.toAbsolutePath().toUri().toString();
+    Map<String, Path> layers = new LinkedHashMap<>();
+    BitSet mapped = new BitSet();
+
+    for (ImmutableNode node : xml.getNodeModel().getNodeHandler().getRootNode().getChildren()) {
+      boolean mappedLayer = MappedPropertiesConfiguration.TAG.equals(node.getNodeName());
+      if (!mappedLayer && !"properties".equals(node.getNodeName()))
+        continue;
+
+      Object fileName = node.getAttributes().get("fileName");
+      if (fileName == null)
+        throw new ConfigurationException("Layer without a fileName in " + definition);
+      Object name = node.getAttributes().get("config-name");
+
+      URL url = FileLocatorUtils.locate(FileLocatorUtils.fileLocator().basePath(basePath).fileName(fileName.toString()).create());
+      mapped.set(layers.size(), mappedLayer);
+      layers.put(String.valueOf(name != null ? name : fileName), url != null ? toPath(url) : directory.resolve(fileName.toString()));
+    }
+    return new WatchedConfiguration(layers, mapped, debounceMillis);
+  }
+
+  private static Path toPath(URL url) throws ConfigurationException {
+    File file = FileLocatorUtils.fileFromURL(url);
+    if (file == null)
+      throw new ConfigurationException(url + " is not a file and cannot be watched");
+    return file.toPath();
+  }
+
+  /**
+   * Returns the latest snapshot.
+   */
+  public CompiledConfiguration get() {
+    return current.get();
+  }
+
+  /**
+   * Number of reloads that published a new snapshot.
+   */
+  public long getReloadCount() {
+    return reloadCount;
+  }
+
+  /**
+   * Starts watching the files for changes.
+   */
+  public synchronized void start() throws IOException {
+    if (watchService != null)
+      return;
+
+    watchService = FileSystems.getDefault().newWatchService();
+    Set<Path> directories = new HashSet<>();
+    for (Path path : paths) {
+      if (directories.add(path.getParent()))
+        path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    WatchService service = watchService;
+    watcher = new Thread(() -> watch(service), "config-watch");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (watchService != null)
+      watchService.close();
+    reloader.shutdownNow();
+  }
+
+  private void watch(WatchService service) {
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        Path directory = (Path) key.watchable();
+        BitSet layersChanged = new BitSet();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            for (int i = 0; i < paths.length; i++) {
+              if (paths[i].getParent().equals(directory))
+                layersChanged.set(i);
+            }
+            continue;
+          }
+
+          Path path = directory.resolve((Path) event.context());
+          for (int i = 0; i < paths.length; i++) {
+            if (paths[i].equals(path))
+              layersChanged.set(i);
+          }
+        }
+        key.reset();
+
+        if (!layersChanged.isEmpty())
+          scheduleReload(layersChanged);
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // closed
+    }
+  }
+
+  /**
+   * Marks layers as changed and restarts the debounce delay.
+   */
+  private synchronized void scheduleReload(BitSet layersChanged) {
+    changed.or(layersChanged);
+    if (pendingReload != null)
+      pendingReload.cancel(false);
+    pendingReload = reloader.schedule(this::reload, debounceMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void reload() {
+    BitSet reload;
+    synchronized (this) {
+      reload = (BitSet) changed.clone();
+      changed.clear();
+    }
+
+    try {
+      for (int i = reload.nextSetBit(0); i >= 0; i = reload.nextSetBit(i + 1)) {
+        try {
+          layers[i] = load(paths[i], mapped.get(i));
+        } catch (ConfigurationException e) {
+          logger.error("Failed to reload layer {} from {}, keeping its previous contents: {}", names[i], paths[i], e);
+        }
+      }
+
+      current.set(combine());
+      reloadCount++;
+      logger.info("Reloaded configuration after changes to {}", changedNames(reload));
+    } catch (RuntimeException e) {
+      logger.error("Failed to rebuild configuration for reason: {}", e);
+    }
+  }
+
+  private CompiledConfiguration combine() {
+    CombinedConfiguration combined = new CombinedConfiguration(new OverrideCombiner());
+    for (int i = 0; i < layers.length; i++)
+      combined.addConfiguration(layers[i], names[i]);
+
+    try {
+      return CompiledConfiguration.compile(combined);
+    } finally {
+      // detaches the combined view from the layers, which are reused by the next reload
+      for (String name : names)
+        combined.removeConfiguration(name);
+    }
+  }
+
+  private static Configuration load(Path path, boolean mapped) throws ConfigurationException {
+    if (!Files.exists(path)) {
+      logger.warn("Configuration layer {} does not exist", path);
+      return new PropertiesConfiguration();
+    }
+    if (!mapped)
+      return new Configurations().properties(path.toFile());
+
+    try {
+      return MappedPropertiesConfiguration.load(path);
+    } catch (IOException e) {
+      throw new ConfigurationException("Failed to load " + path, e);
+    }
+  }
+
+  private List<String> changedNames(BitSet reload) {
+    List<String> changedNames = new ArrayList<>();
+    for (int i = reload.nextSetBit(0); i >= 0; i = reload.nextSetBit(i + 1))
+      changedNames.add(names[i]);
+    return changedNames;
+  }
+}
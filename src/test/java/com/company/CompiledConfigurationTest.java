@@ -0,0 +1,76 @@
+package com.company;
+
+import org.apache.commons.configuration2.CombinedConfiguration;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.apache.commons.configuration2.ex.ConversionException;
+import org.apache.commons.configuration2.tree.OverrideCombiner;
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledConfigurationTest {
+
+  @Test
+  public void testConfigDef() throws Exception {
+    CombinedConfiguration combined = new Configurations().combined(getClass().getResource("/configDef.xml"));
+    CompiledConfiguration compiled = CompiledConfiguration.compile(combined);
+
+    assertEquals(combined.getInt("alpha"), compiled.getInt("alpha"));
+    assertEquals(combined.getString("beta"), compiled.getString("beta"));
+    assertEquals(combined.getString("gamma"), compiled.getString("gamma"));
+    assertEquals("override", compiled.getLayer("alpha"));
+    assertEquals("default", compiled.getLayer("beta"));
+    assertEquals("override", compiled.getLayer("gamma"));
+  }
+
+  @Test
+  public void testTypedValues() {
+    PropertiesConfiguration top = new PropertiesConfiguration();
+    top.addProperty("count", "42");
+    top.addProperty("ratio", "0.5");
+    top.addProperty("enabled", "yes");
+    top.addProperty("path", "${base}/data");
+    PropertiesConfiguration bottom = new PropertiesConfiguration();
+    bottom.addProperty("count", "7");
+    bottom.addProperty("base", "/srv");
+    bottom.addProperty("big", "3000000000");
+
+    CombinedConfiguration combined = new CombinedConfiguration(new OverrideCombiner());
+    combined.addConfiguration(top, "top");
+    combined.addConfiguration(bottom);
+    CompiledConfiguration compiled = CompiledConfiguration.compile(combined);
+
+    assertEquals(42, compiled.getInt("count"));
+    assertEquals(0.5, compiled.getDouble("ratio"), 0.0);
+    assertTrue(compiled.getBoolean("enabled"));
+    assertEquals("/srv/data", compiled.getString("path"));
+    assertEquals(3000000000L, compiled.getLong("big"));
+    assertEquals("top", compiled.getLayer("count"));
+    assertEquals("#1", compiled.getLayer("base"));
+
+    assertEquals(3, compiled.getInt("missing", 3));
+    assertNull(compiled.getString("missing"));
+    assertFalse(compiled.containsKey("missing"));
+  }
+
+  @Test(expected = ConversionException.class)
+  public void testConversionFailure() {
+    CombinedConfiguration combined = new CombinedConfiguration(new OverrideCombiner());
+    PropertiesConfiguration layer = new PropertiesConfiguration();
+    layer.addProperty("big", "3000000000");
+    combined.addConfiguration(layer);
+
+    CompiledConfiguration.compile(combined).getInt("big", 0);
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testMissingKey() {
+    CompiledConfiguration.compile(new CombinedConfiguration()).getInt("alpha");
+  }
+}
@@ -0,0 +1,66 @@
+package com.company;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ConfigSchemaTest {
+
+  private List<SystemConfig.SystemConfigMapper> config;
+  private ConfigSchema schema;
+
+  @Before
+  public void setUp() throws Exception {
+    config = Arrays.asList(new ObjectMapper().readValue(
+      getClass().getResourceAsStream("/config/TestSystemConfiguration.json"), SystemConfig.SystemConfigMapper[].class));
+    schema = ConfigSchema.compile(config);
+  }
+
+  @Test
+  public void testOrdinals() {
+    assertEquals(12, schema.size());
+
+    for (int i = 0; i < schema.size(); i++)
+      assertEquals(i, schema.getFields().get(i).getOrdinal());
+
+    assertEquals(0, schema.getField("maxResults").getOrdinal());
+    assertEquals(7, schema.getField("ontologyFilter").getOrdinal());
+  }
+
+  @Test
+  public void testLookupByKind() {
+    assertEquals(ConfigSchema.FieldKind.INTEGER, schema.getField("maxResults").getKind());
+    assertEquals(ConfigSchema.FieldKind.ONTOLOGY_LIST, schema.getField("ontologyFilter").getKind());
+
+    assertNull(schema.getField("maxResults", ConfigSchema.FieldKind.BOOL));
+    assertNull(schema.getField("noSuchField"));
+  }
+
+  @Test
+  public void testLocate() {
+    ConfigSchema.FieldDescriptor descriptor = schema.getField("ontologyFilter");
+
+    assertSame(config.get(1).getFields().get(0), descriptor.locate(config));
+    assertSame(descriptor.getDefinition(), descriptor.locate(config));
+  }
+
+  @Test
+  public void testCopiesShareMetadata() throws Exception {
+    List<SystemConfig.SystemConfigMapper> copy = SchemaSnapshot.decode(SchemaSnapshot.encode(config));
+    SystemConfig.SystemConfigMapper.SingleField definition = schema.getField("spanQuerySLOP").getDefinition();
+    SystemConfig.SystemConfigMapper.SingleField field = schema.getField("spanQuerySLOP").locate(copy);
+
+    schema.shareMetadata(copy);
+    assertSame(definition.getField(), field.getField());
+    assertSame(definition.getLabel(), field.getLabel());
+    assertSame(definition.getType(), field.getType());
+    assertSame("spanQuerySLOP", schema.getField("spanQuerySLOP").getName());
+  }
+}
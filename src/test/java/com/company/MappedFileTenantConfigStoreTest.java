@@ -0,0 +1,202 @@
+package com.company;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedFileTenantConfigStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testReadWrite() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("tenants.log");
+    try (MappedFileTenantConfigStore store = new MappedFileTenantConfigStore(path)) {
+      assertFalse(store.get("acme", "tenantConfig").isPresent());
+
+      store.put("acme", "tenantConfig", "{\"maxResults\":20}");
+      assertTrue(store.compareAndSet("beta", "tenantConfig", null, "{\"language\":\"de\"}"));
+      assertFalse(store.compareAndSet("acme", "tenantConfig", "{}", "{\"maxResults\":30}"));
+      assertTrue(store.compareAndSet("acme", "tenantConfig", "{\"maxResults\":20}", "{\"maxResults\":30}"));
+
+      assertEquals(Optional.of("{\"maxResults\":30}"), store.get("acme", "tenantConfig"));
+      assertEquals(Optional.of("{\"language\":\"de\"}"), store.get("beta", "tenantConfig"));
+
+      store.remove("beta", "tenantConfig");
+      assertFalse(store.get("beta", "tenantConfig").isPresent());
+      assertEquals(Collections.singleton("acme"), store.getTenantIds("tenantConfig"));
+    }
+  }
+
+  @Test
+  public void testReopenAndCompact() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("tenants.log");
+    try (MappedFileTenantConfigStore store = new MappedFileTenantConfigStore(path)) {
+      for (int i = 0; i < 100; i++)
+        store.put("acme", "tenantConfig", "{\"maxResults\":" + i + "}");
+      store.put("beta", "tenantConfig", "{}");
+      store.put("gamma", "tenantConfig", "{}");
+      store.remove("gamma", "tenantConfig");
+    }
+
+    try (MappedFileTenantConfigStore store = new MappedFileTenantConfigStore(path)) {
+      assertEquals(2, store.size());
+      assertEquals(Optional.of("{\"maxResults\":99}"), store.get("acme", "tenantConfig"));
+
+      store.compact();
+      assertEquals(2, store.size());
+      assertEquals(Optional.of("{\"maxResults\":99}"), store.get("acme", "tenantConfig"));
+      assertEquals(Optional.of("{}"), store.get("beta", "tenantConfig"));
+      assertFalse(store.get("gamma", "tenantConfig").isPresent());
+      store.put("beta", "tenantConfig", "{\"language\":\"fr\"}");
+    }
+
+    try (MappedFileTenantConfigStore store = new MappedFileTenantConfigStore(path)) {
+      assertEquals(Optional.of("{\"language\":\"fr\"}"), store.get("beta", "tenantConfig"));
+    }
+  }
+
+  @Test
+  public void testTornRecordIsDropped() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("tenants.log");
+    int end;
+    try (MappedFileTenantConfigStore store = new MappedFileTenantConfigStore(path)) {
+      store.put("acme", "tenantConfig", "{\"maxResults\":20}");
+      end = 8 + 8 + 12 + "acme".length() + "tenantConfig".length() + "{\"maxResults\":20}".length();
+      store.put("beta", "tenantConfig", "{\"maxResults\":30}");
+    }
+
+    // corrupt the body of the second record as if the process died while writing it
+    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+      file.seek(end + 8 + 4);
+      file.write(new byte[]{'x', 'y'});
+    }
+
+    try (MappedFileTenantConfigStore store = new MappedFileTenantConfigStore(path)) {
+      assertEquals(Optional.of("{\"maxResults\":20}"), store.get("acme", "tenantConfig"));
+      assertFalse(store.get("beta", "tenantConfig").isPresent());
+
+      store.put("gamma", "tenantConfig", "{}");
+    }
+
+    try (MappedFileTenantConfigStore store = new MappedFileTenantConfigStore(path)) {
+      assertEquals(2, store.size());
+      assertTrue(Files.size(path) > 0);
+    }
+  }
+
+  @Test
+  public void testTieredStoreRefreshesOnConflict() throws Exception {
+    InMemoryTenantConfigStore remote = new InMemoryTenantConfigStore();
+    try (MappedFileTenantConfigStore local = new MappedFileTenantConfigStore(folder.newFile().toPath())) {
+      TieredTenantConfigStore store = new TieredTenantConfigStore(local, remote);
+      remote.put("acme", "tenantConfig", "v1");
+
+      assertEquals(Optional.of("v1"), store.get("acme", "tenantConfig"));
+      assertEquals(Optional.of("v1"), local.get("acme", "tenantConfig"));
+
+      // another node wrote v2; the local copy is stale until a write loses against it
+      remote.put("acme", "tenantConfig", "v2");
+      assertFalse(store.compareAndSet("acme", "tenantConfig", "v1", "v3"));
+      assertEquals(Optional.of("v2"), store.get("acme", "tenantConfig"));
+      assertTrue(store.compareAndSet("acme", "tenantConfig", "v2", "v3"));
+      assertEquals(Optional.of("v3"), local.get("acme", "tenantConfig"));
+    }
+  }
+
+  @Test
+  public void testTieredStoreExpiresLocalCopies() throws Exception {
+    InMemoryTenantConfigStore remote = new InMemoryTenantConfigStore();
+    Path path = folder.getRoot().toPath().resolve("tenants.log");
+    try (MappedFileTenantConfigStore local = new MappedFileTenantConfigStore(path)) {
+      TieredTenantConfigStore store = new TieredTenantConfigStore(local, remote, 1, TimeUnit.HOURS);
+      remote.put("acme", "tenantConfig", "v1");
+      assertEquals(Optional.of("v1"), store.get("acme", "tenantConfig"));
+
+      // served locally within the time to live
+      remote.put("acme", "tenantConfig", "v2");
+      assertEquals(Optional.of("v1"), store.get("acme", "tenantConfig"));
+
+      // a restarted node verifies its local copies before serving them
+      TieredTenantConfigStore restarted = new TieredTenantConfigStore(local, remote, 1, TimeUnit.HOURS);
+      assertEquals(Optional.of("v2"), restarted.get("acme", "tenantConfig"));
+
+      TieredTenantConfigStore expiring = new TieredTenantConfigStore(local, remote, 0, TimeUnit.MILLISECONDS);
+      remote.put("acme", "tenantConfig", "v3");
+      assertEquals(Optional.of("v3"), expiring.get("acme", "tenantConfig"));
+      remote.remove("acme", "tenantConfig");
+      assertFalse(expiring.get("acme", "tenantConfig").isPresent());
+      assertFalse(local.get("acme", "tenantConfig").isPresent());
+    }
+  }
+
+  @Test
+  public void testTieredStoreKeepsUnchangedLocalCopies() throws Exception {
+    AtomicInteger localWrites = new AtomicInteger();
+    InMemoryTenantConfigStore local = new InMemoryTenantConfigStore() {
+      @Override
+      public void put(String tenantId, String key, String value) {
+        localWrites.incrementAndGet();
+        super.put(tenantId, key, value);
+      }
+    };
+    InMemoryTenantConfigStore remote = new InMemoryTenantConfigStore();
+    TieredTenantConfigStore store = new TieredTenantConfigStore(local, remote, 0, TimeUnit.MILLISECONDS);
+    remote.put("acme", "tenantConfig", "v1");
+
+    for (int i = 0; i < 5; i++)
+      assertEquals(Optional.of("v1"), store.get("acme", "tenantConfig"));
+    assertEquals(1, localWrites.get());
+
+    remote.put("acme", "tenantConfig", "v2");
+    assertEquals(Optional.of("v2"), store.get("acme", "tenantConfig"));
+    assertEquals(2, localWrites.get());
+  }
+
+  @Test
+  public void testTieredStoreServesLocalCopyWhileRemoteFails() throws Exception {
+    AtomicBoolean failing = new AtomicBoolean();
+    InMemoryTenantConfigStore remote = new InMemoryTenantConfigStore() {
+      @Override
+      public Optional<String> get(String tenantId, String key) {
+        if (failing.get())
+          throw new IllegalStateException("remote store unavailable");
+        return super.get(tenantId, key);
+      }
+    };
+    try (MappedFileTenantConfigStore local = new MappedFileTenantConfigStore(folder.newFile().toPath())) {
+      TieredTenantConfigStore store = new TieredTenantConfigStore(local, remote, 0, TimeUnit.MILLISECONDS);
+      store.put("acme", "tenantConfig", "v1");
+
+      failing.set(true);
+      assertEquals(Optional.of("v1"), store.get("acme", "tenantConfig"));
+      try {
+        store.get("beta", "tenantConfig");
+        fail();
+      } catch (IllegalStateException e) {
+        // nothing to fall back to
+      }
+      try {
+        store.remove("acme", "tenantConfig");
+        fail();
+      } catch (UnsupportedOperationException e) {
+        assertEquals(Optional.of("v1"), local.get("acme", "tenantConfig"));
+      }
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package com.company;
+
+import org.apache.commons.configuration2.CombinedConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedPropertiesConfigurationTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path write(String name, String content) throws Exception {
+    Path path = folder.getRoot().toPath().resolve(name);
+    Files.write(path, content.getBytes(StandardCharsets.ISO_8859_1));
+    return path;
+  }
+
+  private static Map<String, Object> contents(Configuration config) {
+    Map<String, Object> contents = new LinkedHashMap<>();
+    for (Iterator<String> keys = config.getKeys(); keys.hasNext(); ) {
+      String key = keys.next();
+      contents.put(key, config.getProperty(key));
+    }
+    return contents;
+  }
+
+  private void assertSameAsPropertiesConfiguration(Path path, ForkJoinPool pool) throws Exception {
+    Configuration expected = new Configurations().properties(path.toFile());
+    assertEquals(contents(expected), contents(MappedPropertiesConfiguration.load(path, pool)));
+  }
+
+  @Test
+  public void testSyntax() throws Exception {
+    Path path = write("syntax.properties", "# comment \\\n"
+      + "! other comment\n"
+      + "\n"
+      + "  alpha = 5  \n"
+      + "beta:Now is \\\n"
+      + "  # skipped by the continuation\\\n"
+      + "    the time\r\n"
+      + "gamma For all\\tgood\\u0020men\\=\\:\\x\n"
+      + "key\\ with\\=escapes=value\n"
+      + "trailing=a\\\\\n"
+      + "list=1\n"
+      + "list=2\n"
+      + "caf\u00e9=cr\u00e8me\r"
+      + "empty\n"
+      + "last=continued at the end \\");
+
+    MappedPropertiesConfiguration config = MappedPropertiesConfiguration.load(path);
+    assertEquals(5, config.getInt("alpha"));
+    assertEquals("Now is the time", config.getString("beta"));
+    assertEquals("For all\tgood men=:\\x", config.getString("gamma"));
+    assertEquals("value", config.getString("key with=escapes"));
+    assertEquals("a\\", config.getString("trailing"));
+    assertEquals(Arrays.asList("1", "2"), config.getList(String.class, "list"));
+    assertEquals("cr\u00e8me", config.getString("caf\u00e9"));
+    assertEquals("", config.getString("empty"));
+    assertFalse(config.containsKey("last"));
+    assertEquals(8, config.size());
+
+    assertSameAsPropertiesConfiguration(path, ForkJoinPool.commonPool());
+  }
+
+  @Test
+  public void testParsesChunksInParallel() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; content.length() < 3 << 20; i++) {
+      switch (i % 5) {
+        case 0:
+          content.append("# comment ").append(i).append(" \\\n");
+          break;
+        case 1:
+          content.append("key.").append(i).append(" = first \\\n  # not a comment \\\\\\\n  second\r\n");
+          break;
+        case 2:
+          content.append("repeated.").append(i % 100).append(": ").append(i).append('\n');
+          break;
+        default:
+          content.append("tenant.").append(i).append(".setting=value ").append(i).append('\n');
+      }
+    }
+    Path path = write("large.properties", content.toString());
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertSameAsPropertiesConfiguration(path, pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testRejectsIncludes() throws Exception {
+    Path path = write("include.properties", "include=other.properties\n");
+    try {
+      MappedPropertiesConfiguration.load(path);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("Include"));
+    }
+  }
+
+  @Test
+  public void testReadOnly() throws Exception {
+    MappedPropertiesConfiguration config = MappedPropertiesConfiguration.load(write("small.properties", "alpha=1\n"));
+    try {
+      config.setProperty("alpha", "2");
+      fail();
+    } catch (UnsupportedOperationException e) {
+      assertEquals(1, config.getInt("alpha"));
+    }
+  }
+
+  @Test
+  public void testLayerOfDefinition() throws Exception {
+    write("override.properties", "alpha=5\ngamma=For all good men\n");
+    write("default.properties", "alpha=1\nbeta=Now is the time\n");
+    Path definition = write("configDef.xml", "<configuration>\n"
+      + "  <header>\n"
+      + "    <providers>\n"
+      + "      <provider config-tag=\"mappedProperties\" config-class=\"com.company.MappedPropertiesConfiguration$Provider\"/>\n"
+      + "    </providers>\n"
+      + "  </header>\n"
+      + "  <mappedProperties fileName=\"override.properties\" config-name=\"override\"/>\n"
+      + "  <properties fileName=\"default.properties\" config-name=\"default\"/>\n"
+      + "</configuration>\n");
+
+    CombinedConfiguration combined = new Configurations().combined(definition.toFile());
+    assertTrue(combined.getConfiguration("override") instanceof MappedPropertiesConfiguration);
+    assertEquals(5, combined.getInt("alpha"));
+    assertEquals("Now is the time", combined.getString("beta"));
+    assertEquals("For all good men", combined.getString("gamma"));
+
+    try (WatchedConfiguration watched = WatchedConfiguration.fromDefinition(definition, 50)) {
+      assertEquals(5, watched.get().getInt("alpha"));
+      assertEquals("override", watched.get().getLayer("gamma"));
+      assertEquals("default", watched.get().getLayer("beta"));
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.company;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaSnapshotTest {
+
+  private String readConfig() throws Exception {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+      getClass().getResourceAsStream("/config/TestSystemConfiguration.json"), StandardCharsets.UTF_8))) {
+      return reader.lines().collect(Collectors.joining(System.lineSeparator()));
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    List<SystemConfig.SystemConfigMapper> config = SchemaSnapshot.parseJson(readConfig());
+    assertTrue(SchemaSnapshot.validate(config).isEmpty());
+
+    byte[] snapshot = SchemaSnapshot.encode(config);
+    List<SystemConfig.SystemConfigMapper> decoded = SchemaSnapshot.decodeVerified(snapshot);
+
+    ConfigSchema schema = ConfigSchema.compile(config);
+    assertEquals(schema.getFingerprint(), ConfigSchema.compile(decoded).getFingerprint());
+    assertEquals(10, ((SystemConfig.SystemConfigMapper.IntegerField) decoded.get(0).getFields().get(0)).getDefaultValue());
+  }
+
+  @Test
+  public void testValidateReportsDuplicates() throws Exception {
+    String json = readConfig().replace("\"field\": \"minScore\"", "\"field\": \"maxResults\"");
+    List<String> problems = SchemaSnapshot.validate(SchemaSnapshot.parseJson(json));
+
+    assertEquals(1, problems.size());
+    assertTrue(problems.get(0).contains("maxResults"));
+  }
+}
@@ -0,0 +1,379 @@
+package com.company;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SystemConfigUtilTest {
+
+  // overrides of most fields of the test schema, lists and maps included
+  private static final String REPRESENTATIVE_SETTINGS = "{\"maxResults\": 20, \"language\": \"de\", \"spanQuerySLOP\": [1, 2, 3, 4, 5], "
+    + "\"defaultSearchOrder\": [\"PHRASE_IN_SUBJECT\", \"FULLTEXT_KEYWORD\"], "
+    + "\"searchTypeWeights\": [{\"searchType\": \"PHRASE_IN_SUBJECT\", \"weight\": 3.0}, "
+    + "{\"searchType\": \"FULLTEXT_KEYWORD\", \"weight\": 1.5}, {\"searchType\": \"SPAN_IN_SUBJECT\", \"weight\": 0.25}], "
+    + "\"ontologyFilter\": [\"GPE\", \"ORG\", \"PERSON\"], \"stopWords\": [\"a\", \"an\", \"the\", \"of\", \"and\"], "
+    + "\"fieldAliases\": {\"title\": \"subject\", \"body\": \"text\"}}";
+
+  private InMemoryTenantConfigStore store;
+  private SystemConfigUtil configUtil;
+
+  @BeforeClass
+  public static void loadSchema() throws Exception {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+      SystemConfigUtilTest.class.getResourceAsStream("/config/TestSystemConfiguration.json"), StandardCharsets.UTF_8))) {
+      SystemConfig.defaultConfig = reader.lines().collect(Collectors.joining(System.lineSeparator()));
+    }
+  }
+
+  @Before
+  public void setUp() {
+    store = new InMemoryTenantConfigStore();
+    configUtil = SystemConfigUtil.getInstance();
+    configUtil.setStorageFormat(TenantConfigCodec.Format.JSON);
+    configUtil.setMetrics(ConfigMetrics.NONE);
+    configUtil.setStore(store);
+  }
+
+  @Test
+  public void testApplySettings() throws Exception {
+    assertEquals(10, configUtil.getKeyAsInteger("acme", "maxResults"));
+
+    configUtil.applySettings("acme", "{\"maxResults\": 20}");
+    configUtil.applySettings("acme", "{\"enableSynonyms\": false}");
+
+    assertEquals(20, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertFalse(configUtil.getKeyAsBoolean("acme", "enableSynonyms"));
+    assertEquals(2, configUtil.getTenantSnapshot("acme").getVersion());
+
+    configUtil.invalidateTenantConfig("acme");
+    assertEquals(20, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertEquals(10, configUtil.getKeyAsInteger("other", "maxResults"));
+  }
+
+  @Test
+  public void testConcurrentPatchesAreNotLost() throws Exception {
+    String[] patches = {"{\"maxResults\": 30}", "{\"enableSynonyms\": false}", "{\"minScore\": 0.5}", "{\"language\": \"de\"}"};
+    ExecutorService executor = Executors.newFixedThreadPool(patches.length);
+    List<Future<Void>> results = new ArrayList<>();
+    for (String patch : patches)
+      results.add(executor.submit((Callable<Void>) () -> {
+        configUtil.applySettings("acme", patch);
+        return null;
+      }));
+    for (Future<Void> result : results)
+      result.get();
+    executor.shutdown();
+
+    configUtil.invalidateTenantConfig("acme");
+    assertEquals(30, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertFalse(configUtil.getKeyAsBoolean("acme", "enableSynonyms"));
+    assertEquals(0.5f, configUtil.getKeyAsFloat("acme", "minScore"), 0.0f);
+    assertEquals("de", configUtil.getKeyAsString("acme", "language"));
+    assertEquals(4, configUtil.getTenantSnapshot("acme").getVersion());
+  }
+
+  @Test
+  public void testConflictingWriteIsRetried() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    configUtil.setStore(new InMemoryTenantConfigStore() {
+      @Override
+      public boolean compareAndSet(String tenantId, String key, String expected, String value) {
+        // another writer gets in before the first attempt
+        if (attempts.incrementAndGet() == 1)
+          put(tenantId, key, "{\"_version\": 7, \"language\": \"fr\"}");
+        return super.compareAndSet(tenantId, key, expected, value);
+      }
+    });
+
+    configUtil.applySettings("acme", "{\"maxResults\": 40}");
+
+    assertEquals(2, attempts.get());
+    assertEquals(40, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertEquals("fr", configUtil.getKeyAsString("acme", "language"));
+    assertEquals(8, configUtil.getTenantSnapshot("acme").getVersion());
+  }
+
+  @Test
+  public void testViewKeepsItsSnapshot() throws Exception {
+    configUtil.applySettings("acme", "{\"maxResults\": 20, \"language\": \"de\"}");
+    TenantView view = configUtil.getTenantView("acme");
+
+    configUtil.applySettings("acme", "{\"maxResults\": 30, \"language\": \"fr\"}");
+
+    assertEquals(20, view.getInt("maxResults"));
+    assertEquals("de", view.getString("language"));
+    assertEquals(1, view.getSnapshot().getVersion());
+    assertEquals(30, configUtil.getTenantView("acme").getInt("maxResults"));
+
+    // typed reads of a field of another kind
+    assertEquals(3, view.getInt("language", 3));
+    try {
+      view.getInt("language");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().contains("language"));
+    }
+  }
+
+  @Test
+  public void testGetKeys() throws Exception {
+    configUtil.applySettings("acme", "{\"maxResults\": 20}");
+
+    Map<String, Object> values = configUtil.getKeys("acme",
+      new LinkedHashSet<>(Arrays.asList("language", "noSuchKey", "maxResults", "enableSynonyms")));
+
+    assertEquals(Arrays.asList("language", "maxResults", "enableSynonyms"), new ArrayList<>(values.keySet()));
+    assertEquals("en", values.get("language"));
+    assertEquals(20, values.get("maxResults"));
+    assertEquals(true, values.get("enableSynonyms"));
+    assertTrue(configUtil.getKeys("acme", Collections.singleton("noSuchKey")).isEmpty());
+  }
+
+  @Test
+  public void testPatchCannotSetVersion() throws Exception {
+    configUtil.applySettings("acme", "{\"maxResults\": 20}");
+    configUtil.applySettings("acme", "{\"_version\": 100, \"language\": \"de\"}");
+
+    configUtil.invalidateTenantConfig("acme");
+    assertEquals(2, configUtil.getTenantSnapshot("acme").getVersion());
+    assertEquals("de", configUtil.getKeyAsString("acme", "language"));
+  }
+
+  @Test
+  public void testStoreOutageIsNotCached() throws Exception {
+    configUtil.applySettings("acme", "{\"maxResults\": 20}");
+    configUtil.invalidateAllTenantConfigs();
+
+    AtomicInteger failures = new AtomicInteger(1);
+    configUtil.setStore(new InMemoryTenantConfigStore() {
+      @Override
+      public Optional<String> get(String tenantId, String key) {
+        if (failures.getAndDecrement() > 0)
+          throw new IllegalStateException("store unavailable");
+        return store.get(tenantId, key);
+      }
+    });
+
+    // the getters fall back to the defaults while the store fails, and read it again on the next call
+    assertEquals(10, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertEquals(20, configUtil.getKeyAsInteger("acme", "maxResults"));
+
+    failures.set(1);
+    configUtil.invalidateTenantConfig("acme");
+    try {
+      configUtil.resolveTenantSnapshot("acme");
+      fail();
+    } catch (IllegalStateException e) {
+      assertNull(configUtil.getHeapFootprint("acme"));
+    }
+    assertEquals(20, configUtil.resolveTenantSnapshot("acme").getInt(configUtil.getSchema().getField("maxResults").getOrdinal()));
+  }
+
+  @Test
+  public void testUndecodableConfigIsNotCached() throws Exception {
+    store.put("acme", "tenantConfig", "{not json");
+
+    assertEquals(10, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertNull(configUtil.getHeapFootprint("acme"));
+
+    store.put("acme", "tenantConfig", "{\"_version\":1,\"maxResults\":30}");
+    assertEquals(30, configUtil.getKeyAsInteger("acme", "maxResults"));
+  }
+
+  @Test
+  public void testBatchedPatchesAreWrittenOnce() throws Exception {
+    AtomicInteger writes = new AtomicInteger();
+    configUtil.setStore(new InMemoryTenantConfigStore() {
+      @Override
+      public boolean compareAndSet(String tenantId, String key, String expected, String value) {
+        writes.incrementAndGet();
+        return super.compareAndSet(tenantId, key, expected, value);
+      }
+    });
+
+    try (SettingsWriteBatcher batcher = new SettingsWriteBatcher(configUtil, 1, TimeUnit.HOURS, 100, 2)) {
+      List<CompletableFuture<Void>> results = new ArrayList<>();
+      results.add(batcher.submit("acme", "{\"maxResults\": 50}"));
+      results.add(batcher.submit("acme", "{\"language\": \"it\"}"));
+      results.add(batcher.submit("acme", "{\"maxResults\": 60}"));
+      // an invalid value is skipped as it would be on its own, without undoing the earlier one
+      results.add(batcher.submit("acme", "{\"language\": [\"fr\"]}"));
+      // a patch that cannot be applied is rejected on its own
+      CompletableFuture<Void> rejected = batcher.submit("acme", "[{\"maxResults\": 70}]");
+
+      batcher.flush().get(5, TimeUnit.SECONDS);
+      for (CompletableFuture<Void> result : results)
+        assertFalse(result.isCompletedExceptionally());
+      assertTrue(rejected.isCompletedExceptionally());
+    }
+
+    assertEquals(1, writes.get());
+    assertEquals(60, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertEquals("it", configUtil.getKeyAsString("acme", "language"));
+  }
+
+  @Test
+  public void testOnlyOverridesAreStored() throws Exception {
+    configUtil.applySettings("acme", "{\"maxResults\": 10, \"language\": \"de\"}");
+
+    assertEquals("{\"_version\":1,\"language\":\"de\"}", store.get("acme", "tenantConfig").get());
+  }
+
+  @Test
+  public void testMigrateToDelta() throws Exception {
+    store.put("acme", "tenantConfig", configUtil.getDefaultConfigJson().replace("\"en\"", "\"de\""));
+
+    assertTrue(configUtil.migrateToDelta("acme"));
+    assertFalse(configUtil.migrateToDelta("acme"));
+
+    assertEquals("{\"_version\":1,\"language\":\"de\"}", store.get("acme", "tenantConfig").get());
+    assertEquals("de", configUtil.getKeyAsString("acme", "language"));
+  }
+
+  @Test
+  public void testSmileStorageUpgradesStaleEncodings() throws Exception {
+    String fingerprint = configUtil.getSchema().getFingerprint();
+    configUtil.applySettings("acme", REPRESENTATIVE_SETTINGS);
+    String json = store.get("acme", "tenantConfig").get();
+    configUtil.setStorageFormat(TenantConfigCodec.Format.SMILE);
+    configUtil.invalidateAllTenantConfigs();
+
+    assertEquals("de", configUtil.getKeyAsString("acme", "language"));
+    String stored = store.get("acme", "tenantConfig").get();
+    assertTrue(stored.startsWith("zsmile:" + fingerprint + ":"));
+    assertTrue(stored.length() < json.length());
+
+    // a Smile config written for another schema is decoded by field name and re-encoded
+    store.put("beta", "tenantConfig", stored.replace(fingerprint, "00000000"));
+    assertEquals(Arrays.asList(1, 2, 3, 4, 5), configUtil.getSpanQuerySLOP("beta"));
+    assertEquals(stored, store.get("beta", "tenantConfig").get());
+
+    // as is an undeflated Smile config
+    byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(new ObjectMapper().readTree(json));
+    store.put("gamma", "tenantConfig", "smile:" + fingerprint + ":" + Base64.getEncoder().encodeToString(smile));
+    assertEquals("de", configUtil.getKeyAsString("gamma", "language"));
+    assertEquals(stored, store.get("gamma", "tenantConfig").get());
+
+    // configs that are shorter as JSON stay JSON
+    configUtil.applySettings("delta", "{\"maxResults\": 20}");
+    configUtil.invalidateAllTenantConfigs();
+    assertEquals(20, configUtil.getKeyAsInteger("delta", "maxResults"));
+    assertEquals("{\"_version\":1,\"maxResults\":20}", store.get("delta", "tenantConfig").get());
+
+    configUtil.applySettings("acme", "{\"maxResults\": 30}");
+    configUtil.invalidateAllTenantConfigs();
+    assertEquals(30, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertEquals("de", configUtil.getKeyAsString("acme", "language"));
+    assertEquals(2, configUtil.getTenantSnapshot("acme").getVersion());
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    ConfigStatistics statistics = new ConfigStatistics();
+    configUtil.setMetrics(statistics);
+
+    configUtil.applySettings("acme", "{\"maxResults\": 20}");
+    assertEquals(20, configUtil.getKeyAsInteger("acme", "maxResults"));
+    assertEquals(7, configUtil.getKeyAsInteger("acme", "noSuchKey", 7));
+    configUtil.getTenantConfig("acme");
+
+    assertEquals(1, statistics.getStoreReads());
+    assertEquals(1, statistics.getStoreWrites());
+    assertEquals("{\"_version\":1,\"maxResults\":20}".length(), statistics.getStoreWriteBytes());
+    assertEquals(0, statistics.getStoreWriteConflicts());
+    assertEquals(1, statistics.getSchemaParses());
+    assertEquals(2, statistics.getCallCount("getKeyAsInteger"));
+    assertEquals(0, statistics.getSwallowedExceptions("getKeyAsInteger"));
+    assertEquals(1, statistics.getMisses("noSuchKey"));
+    assertTrue(statistics.getLatencyPercentileMicros("applySettings", 99) > 0);
+
+    statistics.reset();
+    assertEquals(0, statistics.getCallCount("getKeyAsInteger"));
+
+    // bytes, not chars
+    configUtil.applySettings("acme", "{\"language\": \"fran\u00e7ais \u4e2d\u6587 \ud83d\ude00\"}");
+    String stored = store.get("acme", "tenantConfig").get();
+    assertEquals(stored.getBytes(StandardCharsets.UTF_8).length, statistics.getStoreWriteBytes());
+    assertEquals(stored.getBytes(StandardCharsets.UTF_8).length, SystemConfigUtil.utf8Length(stored));
+    assertEquals(1, SystemConfigUtil.utf8Length("\ud83d"));
+  }
+
+  @Test
+  public void testDefaultedLookupsCountMissesWithoutExceptions() throws Exception {
+    ConfigStatistics statistics = new ConfigStatistics();
+    configUtil.setMetrics(statistics);
+
+    assertEquals(7, configUtil.getKeyAsInteger("acme", "noSuchKey", 7));
+    assertEquals(7, configUtil.getKeyAsInteger("acme", "noSuchKey", 7));
+    assertEquals("none", configUtil.getKeyAsString("acme", "maxResults", "none"));
+    assertEquals(0.25f, configUtil.getKeyAsFloat("acme", "minScore", 0.5f), 0.0f);
+
+    assertEquals(ConfigSchema.LookupStatus.WRONG_TYPE, configUtil.getSchema().lookup("maxResults", ConfigSchema.FieldKind.STRING));
+    assertEquals(0, statistics.getSwallowedExceptions());
+    assertEquals(3, statistics.getMisses());
+    assertArrayEquals(new String[]{"noSuchKey missing=2 wrongType=0", "maxResults missing=0 wrongType=1"},
+      statistics.getMissSummary());
+  }
+
+  @Test
+  public void testHeapFootprint() throws Exception {
+    configUtil.invalidateAllTenantConfigs();
+    String settings = "{\"spanQuerySLOP\": [1, 3], \"ontologyFilter\": [\"GPE\"], \"language\": \"fr\"}";
+    configUtil.applySettings("acme", settings);
+    configUtil.applySettings("globex", settings);
+    configUtil.invalidateAllTenantConfigs();
+    configUtil.getTenantSnapshot("acme");
+    configUtil.getTenantSnapshot("globex");
+    configUtil.getTenantSnapshot("initech");
+
+    HeapFootprint.Tenant acme = configUtil.getHeapFootprint("acme");
+    assertEquals(3, acme.getOverrides());
+    assertTrue(acme.getStructureBytes() > 0);
+    assertTrue(acme.getValueBytes() > 0);
+    assertEquals(0, configUtil.getHeapFootprint("initech").getTotalBytes());
+    assertNull(configUtil.getHeapFootprint("unknown"));
+
+    HeapFootprint footprint = configUtil.getHeapFootprint();
+    assertEquals(3, footprint.getTenants());
+    assertTrue(footprint.getDefaultBytes() > 0);
+    assertEquals(2 * acme.getStructureBytes(), footprint.getStructureBytes());
+    assertEquals(acme.getValueBytes(), footprint.getValueBytes());
+    assertEquals(acme.getValueBytes(), footprint.getSharingSavings());
+    assertEquals(4, footprint.getSummary().length);
+  }
+
+  @Test
+  public void testInitializeAsyncReturnsSharedInstance() throws Exception {
+    assertSame(configUtil, SystemConfigUtil.initializeAsync().get(5, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,93 @@
+package com.company;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TenantConfigCacheTest {
+
+  private final TenantConfigSnapshot defaults = TenantConfigSnapshot.defaults(
+    ConfigSchema.compile(Collections.<SystemConfig.SystemConfigMapper>emptyList()));
+
+  @Test
+  public void testConcurrentMissesShareOneLoad() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    TenantConfigCache cache = new TenantConfigCache(tenantId -> {
+      loads.incrementAndGet();
+      release.await();
+      return defaults;
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    List<Future<TenantConfigSnapshot>> results = new ArrayList<>();
+    for (int i = 0; i < 16; i++)
+      results.add(executor.submit(() -> cache.get("tenant")));
+
+    Thread.sleep(100);
+    release.countDown();
+
+    for (Future<TenantConfigSnapshot> result : results)
+      assertSame(defaults, result.get(5, TimeUnit.SECONDS));
+    assertEquals(1, loads.get());
+    executor.shutdown();
+  }
+
+  @Test
+  public void testFailedLoadIsNotCached() throws Exception {
+    AtomicInteger loads = new AtomicInteger();
+    TenantConfigCache cache = new TenantConfigCache(tenantId -> {
+      if (loads.incrementAndGet() == 1)
+        throw new IllegalStateException("store unavailable");
+      return defaults;
+    });
+
+    try {
+      cache.get("tenant");
+      fail();
+    } catch (IllegalStateException e) {
+      assertNull(cache.getIfPresent("tenant"));
+    }
+
+    assertSame(defaults, cache.get("tenant"));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testWriteDuringLoadWins() throws Exception {
+    TenantConfigSnapshot written = defaults.toBuilder().build();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    TenantConfigSnapshot stale = TenantConfigSnapshot.defaults(
+      ConfigSchema.compile(Collections.<SystemConfig.SystemConfigMapper>emptyList()));
+    TenantConfigCache cache = new TenantConfigCache(tenantId -> {
+      loading.countDown();
+      release.await();
+      return stale;
+    });
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<TenantConfigSnapshot> reader = executor.submit(() -> cache.get("tenant"));
+    loading.await();
+    cache.put("tenant", written);
+    release.countDown();
+
+    // the load finishing after the write hands out the written snapshot
+    assertSame(written, reader.get(5, TimeUnit.SECONDS));
+    assertSame(written, cache.get("tenant"));
+    executor.shutdown();
+  }
+}
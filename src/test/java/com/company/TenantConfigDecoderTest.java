@@ -0,0 +1,91 @@
+package com.company;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TenantConfigDecoderTest {
+
+  private ObjectMapper mapper = new ObjectMapper();
+  private ConfigSchema schema;
+  private TenantConfigDecoder decoder;
+
+  @Before
+  public void setUp() throws Exception {
+    List<SystemConfig.SystemConfigMapper> config = Arrays.asList(mapper.readValue(
+      getClass().getResourceAsStream("/config/TestSystemConfiguration.json"), SystemConfig.SystemConfigMapper[].class));
+    schema = ConfigSchema.compile(config);
+    decoder = new TenantConfigDecoder(schema, mapper);
+  }
+
+  private int ordinal(String name) {
+    return schema.getField(name).getOrdinal();
+  }
+
+  @Test
+  public void testDecode() throws Exception {
+    TenantConfigSnapshot.Builder builder = TenantConfigSnapshot.defaults(schema).toBuilder();
+    decoder.decode("{\"maxResults\": 20, \"enableSynonyms\": false, \"minScore\": 0.5, \"language\": \"fr\","
+      + " \"spanQuerySLOP\": [1, 3], \"ontologyFilter\": [\"GPE\"], \"defaultSearchOrder\": [\"FULLTEXT_KEYWORD\"],"
+      + " \"searchTypeWeights\": [{\"searchType\": \"SPAN_IN_SUBJECT\", \"weight\": 1.5}],"
+      + " \"unknown\": {\"nested\": [1, 2]}}", builder);
+    TenantConfigSnapshot snapshot = builder.build();
+
+    assertEquals(20, snapshot.getInt(ordinal("maxResults")));
+    assertFalse(snapshot.getBoolean(ordinal("enableSynonyms")));
+    assertEquals(0.5, snapshot.getDouble(ordinal("minScore")), 0.0);
+    assertEquals("fr", snapshot.getObject(ordinal("language")));
+    assertEquals(Arrays.asList(1, 3), snapshot.getObject(ordinal("spanQuerySLOP")));
+    assertEquals(Arrays.asList(SystemConfig.SystemConfigMapper.Ontology.GPE), snapshot.getObject(ordinal("ontologyFilter")));
+    assertEquals(Arrays.asList(SystemConfig.SystemConfigMapper.SearchType.FULLTEXT_KEYWORD),
+      snapshot.getObject(ordinal("defaultSearchOrder")));
+
+    List<?> weights = (List<?>) snapshot.getObject(ordinal("searchTypeWeights"));
+    SystemConfig.SystemConfigMapper.SearchTypeWeightDefault weight = (SystemConfig.SystemConfigMapper.SearchTypeWeightDefault) weights.get(0);
+    assertEquals("SPAN_IN_SUBJECT", weight.getSearchType());
+    assertEquals(1.5, weight.getWeight(), 0.0);
+  }
+
+  @Test
+  public void testInvalidValueKeepsPreviousValue() throws Exception {
+    TenantConfigSnapshot.Builder builder = TenantConfigSnapshot.defaults(schema).toBuilder();
+    decoder.decode("{\"ontologyFilter\": [\"GPE\", \"NOT_AN_ONTOLOGY\"], \"maxResults\": 30}", builder);
+    TenantConfigSnapshot snapshot = builder.build();
+
+    assertEquals(Arrays.asList(SystemConfig.SystemConfigMapper.Ontology.PERSON, SystemConfig.SystemConfigMapper.Ontology.ORG),
+      snapshot.getObject(ordinal("ontologyFilter")));
+    assertEquals(30, snapshot.getInt(ordinal("maxResults")));
+  }
+
+  @Test
+  public void testDecodeLongDurationStringListAndMap() throws Exception {
+    TenantConfigSnapshot.Builder builder = TenantConfigSnapshot.defaults(schema).toBuilder();
+    decoder.decode("{\"maxIndexBytes\": 20000000000, \"searchTimeout\": \"PT1M\", \"stopWords\": [\"an\"],"
+      + " \"fieldAliases\": {\"body\": \"content\"}}", builder);
+    TenantConfigSnapshot snapshot = builder.build();
+
+    assertEquals(20000000000L, snapshot.getLong(ordinal("maxIndexBytes")));
+    assertEquals(Duration.ofMinutes(1), snapshot.getObject(ordinal("searchTimeout")));
+    assertEquals(Arrays.asList("an"), snapshot.getObject(ordinal("stopWords")));
+    assertEquals(Collections.singletonMap("body", "content"), snapshot.getObject(ordinal("fieldAliases")));
+  }
+
+  @Test
+  public void testInvalidDurationAndMapKeepDefaults() throws Exception {
+    TenantConfigSnapshot.Builder builder = TenantConfigSnapshot.defaults(schema).toBuilder();
+    decoder.decode("{\"searchTimeout\": \"soon\", \"fieldAliases\": {\"body\": [\"content\"]}, \"maxResults\": 30}", builder);
+    TenantConfigSnapshot snapshot = builder.build();
+
+    assertEquals(Duration.ofSeconds(30), snapshot.getObject(ordinal("searchTimeout")));
+    assertEquals(Collections.singletonMap("title", "subject"), snapshot.getObject(ordinal("fieldAliases")));
+    assertEquals(30, snapshot.getInt(ordinal("maxResults")));
+  }
+}
@@ -0,0 +1,267 @@
+package com.company;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TenantConfigSnapshotTest {
+
+  private ObjectMapper mapper = new ObjectMapper();
+  private ConfigSchema schema;
+  private TenantConfigSnapshot defaults;
+
+  @Before
+  public void setUp() throws Exception {
+    schema = ConfigSchema.compile(readConfig());
+    defaults = TenantConfigSnapshot.defaults(schema);
+  }
+
+  private List<SystemConfig.SystemConfigMapper> readConfig() throws Exception {
+    return Arrays.asList(mapper.readValue(
+      getClass().getResourceAsStream("/config/TestSystemConfiguration.json"), SystemConfig.SystemConfigMapper[].class));
+  }
+
+  private int ordinal(String name) {
+    return schema.getField(name).getOrdinal();
+  }
+
+  @Test
+  public void testDefaults() {
+    assertEquals(10, defaults.getInt(ordinal("maxResults")));
+    assertTrue(defaults.getBoolean(ordinal("enableSynonyms")));
+    assertEquals(0.25, defaults.getDouble(ordinal("minScore")), 0.0);
+    assertEquals("en", defaults.getObject(ordinal("language")));
+    assertEquals(Arrays.asList(0, 2, 4), defaults.getObject(ordinal("spanQuerySLOP")));
+    assertEquals(0, defaults.getOverrideCount());
+  }
+
+  @Test
+  public void testOverrides() {
+    TenantConfigSnapshot snapshot = defaults.toBuilder()
+      .setInt(ordinal("maxResults"), -3)
+      .setDouble(ordinal("minScore"), 0.75)
+      .setObject(ordinal("language"), "de")
+      .build();
+
+    assertEquals(-3, snapshot.getInt(ordinal("maxResults")));
+    assertEquals(0.75, snapshot.getDouble(ordinal("minScore")), 0.0);
+    assertEquals("de", snapshot.getObject(ordinal("language")));
+    assertTrue(snapshot.getBoolean(ordinal("enableSynonyms")));
+    assertSame(defaults.getObject(ordinal("spanQuerySLOP")), snapshot.getObject(ordinal("spanQuerySLOP")));
+    assertEquals(3, snapshot.getOverrideCount());
+  }
+
+  @Test
+  public void testValuesEqualToDefaultAreNotOverrides() {
+    TenantConfigSnapshot snapshot = defaults.toBuilder()
+      .setInt(ordinal("maxResults"), 10)
+      .setObject(ordinal("spanQuerySLOP"), Arrays.asList(0, 2, 4))
+      .build();
+
+    assertSame(defaults, snapshot);
+  }
+
+  @Test
+  public void testToBuilder() {
+    TenantConfigSnapshot snapshot = defaults.toBuilder()
+      .setBoolean(ordinal("enableSynonyms"), false)
+      .build()
+      .toBuilder()
+      .setInt(ordinal("maxResults"), 25)
+      .build();
+
+    assertFalse(snapshot.getBoolean(ordinal("enableSynonyms")));
+    assertEquals(25, snapshot.getInt(ordinal("maxResults")));
+    assertTrue(snapshot.isOverridden(ordinal("enableSynonyms")));
+    assertFalse(snapshot.isOverridden(ordinal("minScore")));
+  }
+
+  @Test
+  public void testOverridesAcrossWords() {
+    SystemConfig.SystemConfigMapper group = new SystemConfig.SystemConfigMapper();
+    group.setFields(new ArrayList<>());
+    for (int i = 0; i < 150; i++) {
+      SystemConfig.SystemConfigMapper.SingleField field;
+      if (i % 3 == 0) {
+        field = new SystemConfig.SystemConfigMapper.StringField();
+      } else {
+        SystemConfig.SystemConfigMapper.IntegerField integerField = new SystemConfig.SystemConfigMapper.IntegerField();
+        integerField.setDefaultValue(i);
+        field = integerField;
+      }
+      field.setField("field" + i);
+      group.getFields().add(field);
+    }
+    ConfigSchema wide = ConfigSchema.compile(Arrays.asList(group));
+
+    TenantConfigSnapshot.Builder builder = TenantConfigSnapshot.defaults(wide).toBuilder();
+    for (int i = 0; i < 150; i += 7) {
+      if (i % 3 == 0)
+        builder.setObject(i, "value" + i);
+      else
+        builder.setInt(i, -i);
+    }
+    TenantConfigSnapshot snapshot = builder.build();
+
+    for (int i = 0; i < 150; i++) {
+      if (i % 3 == 0)
+        assertEquals(i % 7 == 0 ? "value" + i : null, snapshot.getObject(i));
+      else
+        assertEquals(i % 7 == 0 ? -i : i, snapshot.getInt(i));
+    }
+  }
+
+  @Test
+  public void testEnumListsArePrecomputed() {
+    TenantConfigSnapshot snapshot = defaults.toBuilder()
+      .setObject(ordinal("defaultSearchOrder"), Arrays.asList(
+        SystemConfig.SystemConfigMapper.SearchType.FULLTEXT_KEYWORD, SystemConfig.SystemConfigMapper.SearchType.PHRASE_IN_SUBJECT))
+      .build();
+
+    OntologyFilter filter = (OntologyFilter) snapshot.getObject(ordinal("ontologyFilter"));
+    assertTrue(filter.matches(SystemConfig.SystemConfigMapper.Ontology.ORG));
+    assertFalse(filter.matches(SystemConfig.SystemConfigMapper.Ontology.GPE));
+    assertEquals((1L << SystemConfig.SystemConfigMapper.Ontology.PERSON.ordinal())
+      | (1L << SystemConfig.SystemConfigMapper.Ontology.ORG.ordinal()), filter.getMask());
+
+    SearchOrder order = (SearchOrder) snapshot.getObject(ordinal("defaultSearchOrder"));
+    assertEquals(0, order.rank(SystemConfig.SystemConfigMapper.SearchType.FULLTEXT_KEYWORD));
+    assertEquals(1, order.rank(SystemConfig.SystemConfigMapper.SearchType.PHRASE_IN_SUBJECT));
+    assertEquals(-1, order.rank(SystemConfig.SystemConfigMapper.SearchType.SPAN_IN_SUBJECT));
+    assertEquals(SystemConfig.SystemConfigMapper.SearchType.PHRASE_IN_SUBJECT, order.get(1));
+  }
+
+  @Test
+  public void testSearchTypeWeights() {
+    SearchTypeWeights weights = (SearchTypeWeights) defaults.getObject(ordinal("searchTypeWeights"));
+
+    assertEquals(2.0, weights.weight(SystemConfig.SystemConfigMapper.SearchType.PHRASE_IN_SUBJECT), 0.0);
+    assertEquals(0.5, weights.weight(SystemConfig.SystemConfigMapper.SearchType.FULLTEXT_KEYWORD), 0.0);
+    assertFalse(weights.hasWeight(SystemConfig.SystemConfigMapper.SearchType.SPAN_IN_SUBJECT));
+    assertEquals(1.0, weights.weight(SystemConfig.SystemConfigMapper.SearchType.SPAN_IN_SUBJECT, 1.0), 0.0);
+  }
+
+  @Test
+  public void testSearchTypeWeightEntriesCannotBeChanged() {
+    SearchTypeWeights weights = (SearchTypeWeights) defaults.getObject(ordinal("searchTypeWeights"));
+    SystemConfig.SystemConfigMapper.SearchTypeWeightDefault first = weights.get(0);
+    String searchType = first.getSearchType();
+    double weight = first.getWeight();
+    int hashCode = weights.hashCode();
+
+    first.setSearchType("SPAN_IN_SUBJECT");
+    first.setWeight(weight + 10);
+
+    assertEquals(searchType, weights.get(0).getSearchType());
+    assertEquals(weight, weights.get(0).getWeight(), 0.0);
+    assertEquals(weight, weights.weight(SystemConfig.SystemConfigMapper.SearchType.valueOf(searchType)), 0.0);
+    assertFalse(weights.hasWeight(SystemConfig.SystemConfigMapper.SearchType.SPAN_IN_SUBJECT));
+    assertEquals(hashCode, weights.hashCode());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateSearchTypeWeightsAreRejected() {
+    SystemConfig.SystemConfigMapper.SearchTypeWeightDefault first = new SystemConfig.SystemConfigMapper.SearchTypeWeightDefault();
+    first.setSearchType("SPAN_IN_SUBJECT");
+    first.setWeight(1.0);
+    SystemConfig.SystemConfigMapper.SearchTypeWeightDefault second = new SystemConfig.SystemConfigMapper.SearchTypeWeightDefault();
+    second.setSearchType("SPAN_IN_SUBJECT");
+    second.setWeight(3.0);
+
+    defaults.toBuilder().setObject(ordinal("searchTypeWeights"), Arrays.asList(first, second));
+  }
+
+  @Test
+  public void testApplyTo() throws Exception {
+    TenantConfigSnapshot snapshot = defaults.toBuilder()
+      .setInt(ordinal("maxResults"), 25)
+      .setBoolean(ordinal("enableSynonyms"), false)
+      .build();
+
+    List<SystemConfig.SystemConfigMapper> configs = readConfig();
+    snapshot.applyTo(configs);
+
+    assertEquals(25, ((SystemConfig.SystemConfigMapper.IntegerField) schema.getField("maxResults").locate(configs)).getDefaultValue());
+    assertFalse(((SystemConfig.SystemConfigMapper.BoolField) schema.getField("enableSynonyms").locate(configs)).isDefaultValue());
+  }
+
+  @Test
+  public void testLongDurationStringListAndMap() throws Exception {
+    assertEquals(10000000000L, defaults.getLong(ordinal("maxIndexBytes")));
+    assertEquals(Duration.ofSeconds(30), defaults.getObject(ordinal("searchTimeout")));
+
+    Map<String, String> aliases = new HashMap<>();
+    aliases.put("title", "heading");
+    TenantConfigSnapshot snapshot = defaults.toBuilder()
+      .setLong(ordinal("maxIndexBytes"), -1L)
+      .setObject(ordinal("searchTimeout"), "PT2S")
+      .setObject(ordinal("stopWords"), Arrays.asList("a", "the"))
+      .setObject(ordinal("fieldAliases"), aliases)
+      .build();
+    aliases.put("body", "content");
+
+    assertEquals(-1L, snapshot.getLong(ordinal("maxIndexBytes")));
+    assertEquals(Duration.ofSeconds(2), snapshot.getObject(ordinal("searchTimeout")));
+    assertFalse(snapshot.isOverridden(ordinal("stopWords")));
+    assertEquals(Collections.singletonMap("title", "heading"), snapshot.getObject(ordinal("fieldAliases")));
+    assertEquals(3, snapshot.getOverrideCount());
+
+    List<SystemConfig.SystemConfigMapper> configs = readConfig();
+    snapshot.applyTo(configs);
+    assertEquals(-1L, ((SystemConfig.SystemConfigMapper.LongField) schema.getField("maxIndexBytes").locate(configs)).getDefaultValue());
+    assertEquals("PT2S", ((SystemConfig.SystemConfigMapper.DurationField) schema.getField("searchTimeout").locate(configs)).getDefaultValue());
+  }
+
+  @Test
+  public void testRegisteredFieldType() {
+    assertSame(FieldTypes.forKind(ConfigSchema.FieldKind.DURATION), schema.getField("searchTimeout").getType());
+    assertEquals(ConfigSchema.FieldKind.STRING_MAP, ConfigSchema.FieldKind.of(new SystemConfig.SystemConfigMapper.StringMap()));
+    assertNull(ConfigSchema.FieldKind.of(new SystemConfig.SystemConfigMapper.SingleField()));
+  }
+
+  @Test
+  public void testEqualOverridesShareOneInstance() {
+    SystemConfig.SystemConfigMapper.SearchTypeWeightDefault weight = new SystemConfig.SystemConfigMapper.SearchTypeWeightDefault();
+    weight.setSearchType(new String("SPAN_IN_SUBJECT"));
+    weight.setWeight(1.5);
+
+    TenantConfigSnapshot first = defaults.toBuilder()
+      .setObject(ordinal("spanQuerySLOP"), new ArrayList<>(Arrays.asList(1, 3)))
+      .setObject(ordinal("searchTypeWeights"), Collections.singletonList(weight))
+      .setObject(ordinal("language"), new String("fr"))
+      .build();
+    TenantConfigSnapshot second = defaults.toBuilder()
+      .setObject(ordinal("spanQuerySLOP"), new ArrayList<>(Arrays.asList(1, 3)))
+      .setObject(ordinal("searchTypeWeights"), Collections.singletonList(weight))
+      .setObject(ordinal("language"), new String("fr"))
+      .build();
+
+    assertSame(first.getObject(ordinal("spanQuerySLOP")), second.getObject(ordinal("spanQuerySLOP")));
+    assertSame(first.getObject(ordinal("searchTypeWeights")), second.getObject(ordinal("searchTypeWeights")));
+    assertSame(first.getObject(ordinal("language")), second.getObject(ordinal("language")));
+    assertSame(SystemConfig.SystemConfigMapper.SearchType.SPAN_IN_SUBJECT.name(),
+      ((SearchTypeWeights) first.getObject(ordinal("searchTypeWeights"))).get(0).getSearchType());
+
+    // an empty list of strings is not replaced by an empty list of another kind
+    TenantConfigSnapshot empty = defaults.toBuilder()
+      .setObject(ordinal("ontologyFilter"), new ArrayList<>())
+      .setObject(ordinal("stopWords"), new ArrayList<>())
+      .build();
+    assertTrue(empty.getObject(ordinal("ontologyFilter")) instanceof OntologyFilter);
+    assertFalse(empty.getObject(ordinal("stopWords")) instanceof OntologyFilter);
+  }
+}
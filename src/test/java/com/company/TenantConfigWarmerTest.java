@@ -0,0 +1,134 @@
+package com.company;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TenantConfigWarmerTest {
+
+  private InMemoryTenantConfigStore store;
+  private SystemConfigUtil configUtil;
+
+  @BeforeClass
+  public static void loadSchema() throws Exception {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+      TenantConfigWarmerTest.class.getResourceAsStream("/config/TestSystemConfiguration.json"), StandardCharsets.UTF_8))) {
+      SystemConfig.defaultConfig = reader.lines().collect(Collectors.joining(System.lineSeparator()));
+    }
+  }
+
+  @Before
+  public void setUp() {
+    configUtil = SystemConfigUtil.getInstance();
+    configUtil.setStorageFormat(TenantConfigCodec.Format.JSON);
+    configUtil.setMetrics(ConfigMetrics.NONE);
+  }
+
+  @Test
+  public void testFailingTenantIsReported() throws Exception {
+    store = new InMemoryTenantConfigStore() {
+      @Override
+      public Optional<String> get(String tenantId, String key) {
+        if (tenantId.equals("broken"))
+          throw new IllegalStateException("store unavailable");
+        return super.get(tenantId, key);
+      }
+    };
+    configUtil.setStore(store);
+    store.put("acme", "tenantConfig", "{\"_version\":1,\"maxResults\":20}");
+
+    TenantConfigWarmer.WarmupReport report = new TenantConfigWarmer(configUtil, 2)
+      .warmUp(Arrays.asList("acme", "broken", "globex"), 10, TimeUnit.SECONDS);
+
+    assertTrue(report.isComplete());
+    assertEquals(3, report.getTenantCount());
+    assertEquals(3, report.getDoneCount());
+    assertEquals(2, report.getLoadedCount());
+    assertEquals(Collections.singleton("broken"), report.getFailures().keySet());
+    assertTrue(report.getFailures().get("broken") instanceof IllegalStateException);
+    assertTrue(report.getLatencies().keySet().containsAll(Arrays.asList("acme", "globex")));
+    assertTrue(report.getElapsedNanos() > 0);
+
+    assertNotNull(configUtil.getHeapFootprint("acme"));
+    assertNull(configUtil.getHeapFootprint("broken"));
+    assertEquals(20, configUtil.getKeyAsInteger("acme", "maxResults"));
+  }
+
+  @Test
+  public void testProgress() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    store = new InMemoryTenantConfigStore() {
+      @Override
+      public Optional<String> get(String tenantId, String key) {
+        if (tenantId.equals("slow")) {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.get(tenantId, key);
+      }
+    };
+    configUtil.setStore(store);
+
+    TenantConfigWarmer.WarmupReport report = new TenantConfigWarmer(configUtil, 4)
+      .warmUp(Arrays.asList("slow", "acme", "globex", "initech"), 100, TimeUnit.MILLISECONDS);
+
+    // the timed warm-up returns while the slow tenant is still loading
+    long deadline = System.currentTimeMillis() + 10000;
+    while (report.getDoneCount() < 3 && System.currentTimeMillis() < deadline)
+      Thread.sleep(10);
+    assertFalse(report.isComplete());
+    assertEquals(3, report.getDoneCount());
+    assertEquals(3, report.getLoadedCount());
+    assertFalse(report.getLatencies().containsKey("slow"));
+
+    release.countDown();
+    assertTrue(report.await(10, TimeUnit.SECONDS));
+    assertEquals(report, report.getCompletion().get());
+    assertEquals(4, report.getDoneCount());
+    assertEquals(4, report.getLoadedCount());
+    assertTrue(report.getFailures().isEmpty());
+  }
+
+  @Test
+  public void testWarmUpStoredTenants() throws Exception {
+    store = new InMemoryTenantConfigStore();
+    configUtil.setStore(store);
+    store.put("acme", "tenantConfig", "{\"_version\":1,\"maxResults\":20}");
+    store.put("globex", "tenantConfig", "{\"_version\":1,\"language\":\"de\"}");
+    store.put("initech", "otherKey", "value");
+
+    TenantConfigWarmer.WarmupReport report = new TenantConfigWarmer(configUtil, 2).warmUpStoredTenants();
+
+    assertTrue(report.await(10, TimeUnit.SECONDS));
+    assertEquals(2, report.getLoadedCount());
+    assertEquals(new HashSet<>(Arrays.asList("acme", "globex")), report.getLatencies().keySet());
+  }
+
+  @Test
+  public void testNoTenants() throws Exception {
+    TenantConfigWarmer.WarmupReport report = new TenantConfigWarmer(configUtil, 4).warmUp(Collections.emptyList());
+
+    assertTrue(report.isComplete());
+    assertEquals(0, report.getDoneCount());
+  }
+}
@@ -0,0 +1,113 @@
+package com.company;
+
+import org.apache.commons.configuration2.CombinedConfiguration;
+import org.apache.commons.configuration2.builder.fluent.Configurations;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WatchedConfigurationTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path write(String name, String content) throws Exception {
+    Path path = folder.getRoot().toPath().resolve(name);
+    Files.write(path, content.getBytes(StandardCharsets.ISO_8859_1));
+    return path;
+  }
+
+  // polling watch services, as on macOS, may take 10 seconds or more to notice a change
+  private static void awaitReloads(WatchedConfiguration config, long count) throws Exception {
+    long deadline = System.currentTimeMillis() + 60000;
+    while (config.getReloadCount() < count && System.currentTimeMillis() < deadline)
+      Thread.sleep(20);
+    assertEquals(count, config.getReloadCount());
+  }
+
+  @Test
+  public void testFromDefinition() throws Exception {
+    write("override.properties", "alpha=5\n");
+    write("default.properties", "alpha=1\nbeta=Now is the time\n");
+    Path definition = write("configDef.xml", "<configuration>\n"
+      + "  <properties fileName=\"override.properties\" config-name=\"override\"/>\n"
+      + "  <properties fileName=\"default.properties\"/>\n"
+      + "</configuration>\n");
+
+    try (WatchedConfiguration config = WatchedConfiguration.fromDefinition(definition, 50)) {
+      assertEquals(5, config.get().getInt("alpha"));
+      assertEquals("override", config.get().getLayer("alpha"));
+      assertEquals("default.properties", config.get().getLayer("beta"));
+    }
+  }
+
+  @Test
+  public void testFromDefinitionOnClasspath() throws Exception {
+    CombinedConfiguration combined = new Configurations().combined("configDef.xml");
+
+    try (WatchedConfiguration config = WatchedConfiguration.fromDefinition("configDef.xml", 50)) {
+      assertEquals(combined.getInt("alpha"), config.get().getInt("alpha"));
+      assertEquals(combined.getString("beta"), config.get().getString("beta"));
+      assertEquals(combined.getString("gamma"), config.get().getString("gamma"));
+      assertEquals("override", config.get().getLayer("alpha"));
+    }
+  }
+
+  @Test
+  public void testReloadsChangedLayerOnce() throws Exception {
+    Map<String, Path> layers = new LinkedHashMap<>();
+    layers.put("override", write("override.properties", "alpha=5\n"));
+    layers.put("default", write("default.properties", "alpha=1\nbeta=Now is the time\n"));
+
+    try (WatchedConfiguration config = new WatchedConfiguration(layers, 300)) {
+      config.start();
+      CompiledConfiguration before = config.get();
+
+      // a burst of writes is debounced into one reload
+      for (int i = 6; i <= 9; i++)
+        write("override.properties", "alpha=" + i + "\n");
+      awaitReloads(config, 1);
+
+      CompiledConfiguration after = config.get();
+      assertNotSame(before, after);
+      assertEquals(5, before.getInt("alpha"));
+      assertEquals(9, after.getInt("alpha"));
+      assertEquals("Now is the time", after.getString("beta"));
+
+      // a removed file leaves its layer empty
+      Files.delete(layers.get("override"));
+      awaitReloads(config, 2);
+      assertEquals(1, config.get().getInt("alpha"));
+      assertEquals("default", config.get().getLayer("alpha"));
+
+      // an unrelated file does not reload on its own: the next reload is that of the watched file
+      write("unrelated.properties", "alpha=100\n");
+      write("default.properties", "alpha=2\nbeta=Now is the time\n");
+      awaitReloads(config, 3);
+      assertEquals(2, config.get().getInt("alpha"));
+      assertTrue(config.get().containsKey("beta"));
+    }
+  }
+
+  @Test
+  public void testSnapshotIsStableWithoutChanges() throws Exception {
+    Map<String, Path> layers = new LinkedHashMap<>();
+    layers.put("base", write("base.properties", "alpha=99\n"));
+
+    try (WatchedConfiguration config = new WatchedConfiguration(layers, 50)) {
+      assertSame(config.get(), config.get());
+      assertEquals(99, config.get().getInt("alpha"));
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.company.codegen;
+
+import com.company.ConfigSchema;
+import com.company.FieldType;
+import com.company.FieldTypes;
+import com.company.SchemaSnapshot;
+import com.company.SystemConfig;
+import com.company.TenantConfigSnapshot;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class TenantSettingsGeneratorTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path source() throws Exception {
+    return Paths.get(getClass().getResource("/config/TestSystemConfiguration.json").toURI());
+  }
+
+  private ConfigSchema schema() throws Exception {
+    return ConfigSchema.compile(SchemaSnapshot.parseJson(new String(Files.readAllBytes(source()), StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testEveryFieldKindCanBeGenerated() {
+    for (ConfigSchema.FieldKind kind : ConfigSchema.FieldKind.values()) {
+      FieldType type = FieldTypes.forKind(kind);
+      assertNotNull("no field type registered for " + kind, type);
+      assertEquals("generator kind of " + type.getFieldClass().getSimpleName(),
+        kind.name(), String.valueOf(TenantSettingsGenerator.KINDS.get(type.getFieldClass().getSimpleName())));
+    }
+
+    // every field class the JSON can name has a field type
+    JsonSubTypes subTypes = SystemConfig.SystemConfigMapper.SingleField.class.getAnnotation(JsonSubTypes.class);
+    for (JsonSubTypes.Type subType : subTypes.value())
+      assertTrue("no generator kind for " + subType.name(), TenantSettingsGenerator.KINDS.containsKey(subType.name()));
+    assertEquals(ConfigSchema.FieldKind.values().length, TenantSettingsGenerator.KINDS.size());
+  }
+
+  @Test
+  public void testFingerprintMatchesConfigSchema() throws Exception {
+    Matcher matcher = Pattern.compile("SCHEMA_FINGERPRINT = \"(\\w+)\"").matcher(TenantSettingsGenerator.generate(source()));
+
+    assertTrue(matcher.find());
+    assertEquals(schema().getFingerprint(), matcher.group(1));
+  }
+
+  @Test
+  public void testGeneratedSourceCompiles() throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assumeNotNull(compiler);
+
+    Path sourceRoot = folder.newFolder("src").toPath();
+    Path classes = folder.newFolder("classes").toPath();
+    Path file = sourceRoot.resolve("com/company/TenantSettings.java");
+    Files.createDirectories(file.getParent());
+    Files.write(file, TenantSettingsGenerator.generate(source()).getBytes(StandardCharsets.UTF_8));
+
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    int result = compiler.run(null, null, errors, "-classpath", System.getProperty("java.class.path"),
+      "-d", classes.toString(), file.toString());
+    assertEquals(errors.toString(), 0, result);
+
+    ConfigSchema schema = schema();
+    TenantConfigSnapshot snapshot = TenantConfigSnapshot.defaults(schema).toBuilder()
+      .setInt(schema.getField("maxResults").getOrdinal(), 25)
+      .build();
+    try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<?> settings = loader.loadClass("com.company.TenantSettings");
+      Object tenant = settings.getMethod("of", TenantConfigSnapshot.class).invoke(null, snapshot);
+      Method maxResults = settings.getMethod("getMaxResults");
+
+      assertNotNull(tenant);
+      assertEquals(25, maxResults.invoke(tenant));
+      assertEquals(schema.getField("maxResults").getOrdinal(), settings.getField("MAX_RESULTS").getInt(null));
+    }
+  }
+}